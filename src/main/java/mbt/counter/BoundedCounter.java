@@ -0,0 +1,19 @@
+package mbt.counter;
+
+/**
+ * A counter whose value stays within 0..max: counting beyond a bound leaves it at that bound.
+ */
+public interface BoundedCounter {
+
+	void countUp();
+
+	void countDown();
+
+	void countUpBy(int steps);
+
+	void countDownBy(int steps);
+
+	int value();
+
+	int max();
+}
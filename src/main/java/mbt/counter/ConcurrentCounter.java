@@ -0,0 +1,71 @@
+package mbt.counter;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Thread-safe variant of {@link Counter} with the same clamping to 0..max.
+ * Bounds check and update happen in one compare-and-set, so concurrent callers can never push it out of bounds.
+ */
+public class ConcurrentCounter implements BoundedCounter {
+
+	private final int max;
+	private final AtomicInteger value = new AtomicInteger(0);
+
+	public ConcurrentCounter() {
+		this(100);
+	}
+
+	public ConcurrentCounter(int max) {
+		Counter.checkMax(max);
+		this.max = max;
+	}
+
+	@Override
+	public void countUp() {
+		countUpBy(1);
+	}
+
+	@Override
+	public void countDown() {
+		countDownBy(1);
+	}
+
+	@Override
+	public void countUpBy(int steps) {
+		Counter.checkSteps(steps);
+		int current;
+		do {
+			current = value.get();
+			if (current >= max) {
+				return;
+			}
+		} while (!value.compareAndSet(current, steps >= max - current ? max : current + steps));
+	}
+
+	@Override
+	public void countDownBy(int steps) {
+		Counter.checkSteps(steps);
+		int current;
+		do {
+			current = value.get();
+			if (current <= 0) {
+				return;
+			}
+		} while (!value.compareAndSet(current, steps >= current ? 0 : current - steps));
+	}
+
+	@Override
+	public int value() {
+		return value.get();
+	}
+
+	@Override
+	public int max() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ConcurrentCounter[%d]", value());
+	}
+}
@@ -1,25 +1,67 @@
 package mbt.counter;
 
-public class Counter {
+public class Counter implements BoundedCounter {
 
+	private final int max;
 	private int value = 0;
 
+	public Counter() {
+		this(100);
+	}
+
+	public Counter(int max) {
+		checkMax(max);
+		this.max = max;
+	}
+
+	@Override
 	public void countUp() {
-		if (value < 100) {
+		if (value < max) {
 			value++;
 		}
 	}
 
+	@Override
 	public void countDown() {
 		if (value > 0) {
 			value--;
 		}
 	}
 
+	@Override
+	public void countUpBy(int steps) {
+		checkSteps(steps);
+		value = steps >= max - value ? max : value + steps;
+	}
+
+	@Override
+	public void countDownBy(int steps) {
+		checkSteps(steps);
+		value = steps >= value ? 0 : value - steps;
+	}
+
+	@Override
 	public int value() {
 		return value;
 	}
 
+	@Override
+	public int max() {
+		return max;
+	}
+
+	static void checkMax(int max) {
+		if (max < 0) {
+			throw new IllegalArgumentException("max must not be negative but was " + max);
+		}
+	}
+
+	static void checkSteps(int steps) {
+		if (steps < 0) {
+			throw new IllegalArgumentException("steps must not be negative but was " + steps);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return String.format("Counter[%d]", value);
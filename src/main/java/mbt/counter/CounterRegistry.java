@@ -0,0 +1,152 @@
+package mbt.counter;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * Many bounded counters addressed by an int key, with the same clamping to 0..max as {@link Counter}.
+ * Values live in flat int pages that are allocated on first write, so untouched key ranges cost no memory
+ * and there is no object per counter. All per-slot operations are atomic.
+ */
+public class CounterRegistry {
+
+	public interface SlotVisitor {
+		void visit(int key, int value);
+	}
+
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+	private final int capacity;
+	private final int max;
+	private final AtomicReferenceArray<AtomicIntegerArray> pages;
+
+	public CounterRegistry(int capacity) {
+		this(capacity, 100);
+	}
+
+	public CounterRegistry(int capacity, int max) {
+		if (capacity < 0 || max < 0) {
+			throw new IllegalArgumentException(
+					String.format("capacity and max must not be negative but were %d and %d", capacity, max)
+			);
+		}
+		this.capacity = capacity;
+		this.max = max;
+		this.pages = new AtomicReferenceArray<>((int) (((long) capacity + PAGE_MASK) >> PAGE_SHIFT));
+	}
+
+	public int capacity() {
+		return capacity;
+	}
+
+	public int max() {
+		return max;
+	}
+
+	public void countUp(int key) {
+		countUpBy(key, 1);
+	}
+
+	public void countDown(int key) {
+		countDownBy(key, 1);
+	}
+
+	public void countUpBy(int key, int steps) {
+		Counter.checkSteps(steps);
+		AtomicIntegerArray page = pageForWrite(key);
+		int slot = key & PAGE_MASK;
+		int current;
+		do {
+			current = page.get(slot);
+			if (current >= max) {
+				return;
+			}
+		} while (!page.compareAndSet(slot, current, steps >= max - current ? max : current + steps));
+	}
+
+	public void countDownBy(int key, int steps) {
+		Counter.checkSteps(steps);
+		checkKey(key);
+		AtomicIntegerArray page = pages.get(key >> PAGE_SHIFT);
+		if (page == null) {
+			return;
+		}
+		int slot = key & PAGE_MASK;
+		int current;
+		do {
+			current = page.get(slot);
+			if (current <= 0) {
+				return;
+			}
+		} while (!page.compareAndSet(slot, current, steps >= current ? 0 : current - steps));
+	}
+
+	public int value(int key) {
+		checkKey(key);
+		AtomicIntegerArray page = pages.get(key >> PAGE_SHIFT);
+		return page == null ? 0 : page.get(key & PAGE_MASK);
+	}
+
+	/**
+	 * Copies all values into one array indexed by key.
+	 * Each slot is read atomically, but the snapshot as a whole is not taken at a single point in time.
+	 */
+	public int[] snapshot() {
+		int[] values = new int[capacity];
+		for (int pageIndex = 0; pageIndex < pages.length(); pageIndex++) {
+			AtomicIntegerArray page = pages.get(pageIndex);
+			if (page == null) {
+				continue;
+			}
+			int firstKey = pageIndex << PAGE_SHIFT;
+			int slots = Math.min(PAGE_SIZE, capacity - firstKey);
+			for (int slot = 0; slot < slots; slot++) {
+				values[firstKey + slot] = page.get(slot);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Visits all counters with a value above zero in ascending key order. Unallocated pages are skipped.
+	 */
+	public void forEachNonZero(SlotVisitor visitor) {
+		for (int pageIndex = 0; pageIndex < pages.length(); pageIndex++) {
+			AtomicIntegerArray page = pages.get(pageIndex);
+			if (page == null) {
+				continue;
+			}
+			int firstKey = pageIndex << PAGE_SHIFT;
+			int slots = Math.min(PAGE_SIZE, capacity - firstKey);
+			for (int slot = 0; slot < slots; slot++) {
+				int value = page.get(slot);
+				if (value > 0) {
+					visitor.visit(firstKey + slot, value);
+				}
+			}
+		}
+	}
+
+	private AtomicIntegerArray pageForWrite(int key) {
+		checkKey(key);
+		int pageIndex = key >> PAGE_SHIFT;
+		AtomicIntegerArray page = pages.get(pageIndex);
+		if (page == null) {
+			pages.compareAndSet(pageIndex, null, new AtomicIntegerArray(PAGE_SIZE));
+			page = pages.get(pageIndex);
+		}
+		return page;
+	}
+
+	private void checkKey(int key) {
+		if (key < 0 || key >= capacity) {
+			throw new IndexOutOfBoundsException(String.format("key %d is outside of 0..%d", key, capacity - 1));
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("CounterRegistry[capacity=%d, max=%d]", capacity, max);
+	}
+}
@@ -0,0 +1,59 @@
+package mbt.tecoc;
+
+import java.sql.*;
+
+public class ChangeEvent {
+
+	public enum Entity {
+		USER, POST
+	}
+
+	public enum Kind {
+		CREATED, DELETED
+	}
+
+	static ChangeEvent fromResultSet(ResultSet resultSet) {
+		try {
+			long offset = resultSet.getLong("id");
+			Entity entity = Entity.valueOf(resultSet.getString("entity"));
+			Kind kind = Kind.valueOf(resultSet.getString("kind"));
+			int entityId = resultSet.getInt("entity_id");
+			return new ChangeEvent(offset, entity, kind, entityId);
+		} catch (SQLException sqlException) {
+			throw new RuntimeException(sqlException);
+		}
+	}
+
+	private final long offset;
+	private final Entity entity;
+	private final Kind kind;
+	private final int entityId;
+
+	ChangeEvent(long offset, Entity entity, Kind kind, int entityId) {
+		this.offset = offset;
+		this.entity = entity;
+		this.kind = kind;
+		this.entityId = entityId;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public Entity getEntity() {
+		return entity;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	public int getEntityId() {
+		return entityId;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ChangeEvent{offset=%d, %s %s, entityId=%d}", offset, entity, kind, entityId);
+	}
+}
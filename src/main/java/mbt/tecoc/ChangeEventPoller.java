@@ -0,0 +1,53 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+/**
+ * Reads the change events outbox in batches, starting after a given offset.
+ * Store {@link #offset()} after processing a batch to resume from there later.
+ * <p>
+ * Offsets are the ids of the outbox rows, which are handed out on insert and not on commit.
+ * The poller therefore requires a single writing session per database: with several writers an event
+ * with a lower offset can commit after a higher one has been polled, and it would be skipped for good.
+ * {@link TecocPersistence} writes through one connection only, so one instance per database is safe.
+ */
+public class ChangeEventPoller {
+
+	private final TecocPersistence persistence;
+	private final int batchSize;
+	private long offset;
+
+	public ChangeEventPoller(TecocPersistence persistence, long offset, int batchSize) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1 but was " + batchSize);
+		}
+		this.persistence = persistence;
+		this.offset = offset;
+		this.batchSize = batchSize;
+	}
+
+	public ChangeEventPoller(TecocPersistence persistence) {
+		this(persistence, 0, 100);
+	}
+
+	public List<ChangeEvent> poll() {
+		List<ChangeEvent> batch = persistence.readChangeEvents(offset, batchSize);
+		if (!batch.isEmpty()) {
+			offset = batch.get(batch.size() - 1).getOffset();
+		}
+		return batch;
+	}
+
+	public int pollInto(ChangeListener listener) {
+		List<ChangeEvent> batch = persistence.readChangeEvents(offset, batchSize);
+		for (ChangeEvent event : batch) {
+			listener.onChange(event);
+			offset = event.getOffset();
+		}
+		return batch.size();
+	}
+
+	public long offset() {
+		return offset;
+	}
+}
@@ -0,0 +1,7 @@
+package mbt.tecoc;
+
+public interface ChangeListener {
+
+	void onChange(ChangeEvent event);
+
+}
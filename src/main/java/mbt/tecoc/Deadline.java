@@ -0,0 +1,123 @@
+package mbt.tecoc;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * The deadline of one {@link TecocPersistence} call. Statements created through {@link #watch(Connection)}
+ * are cancelled when the deadline expires and fail right away when they are executed after it.
+ * Their query timeout is only a backstop, since HSQLDB counts it in whole seconds.
+ * HSQLDB cannot cancel a statement that waits for a lock held by another session.
+ */
+class Deadline implements AutoCloseable {
+
+	private static final ScheduledExecutorService canceller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "tecoc-deadline");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final long startNanos;
+	private final long expiresAtNanos;
+	private final List<Statement> statements = new CopyOnWriteArrayList<>();
+
+	private volatile boolean cancelled = false;
+	private ScheduledFuture<?> cancellation = null;
+
+	Deadline(long startNanos, long expiresAtNanos) {
+		this.startNanos = startNanos;
+		this.expiresAtNanos = expiresAtNanos;
+	}
+
+	boolean isExpired() {
+		return cancelled || System.nanoTime() - expiresAtNanos >= 0;
+	}
+
+	Duration timeout() {
+		return Duration.ofNanos(expiresAtNanos - startNanos);
+	}
+
+	Duration elapsed() {
+		return Duration.ofNanos(System.nanoTime() - startNanos);
+	}
+
+	void check() throws SQLTimeoutException {
+		if (isExpired()) {
+			throw new SQLTimeoutException(String.format("Deadline of %d ms has expired", timeout().toMillis()));
+		}
+	}
+
+	PersistenceTimeoutException exceeded(Throwable cause) {
+		return new PersistenceTimeoutException(timeout(), elapsed(), cause);
+	}
+
+	Connection watch(Connection connection) {
+		cancellation = canceller.schedule(this::cancelStatements, expiresAtNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+		Connection[] watched = new Connection[1];
+		watched[0] = proxy(Connection.class, (method, args) -> {
+			Object result = invoke(connection, method, args);
+			if (result instanceof Statement) {
+				return watchStatement(method.getReturnType(), (Statement) result, watched[0]);
+			}
+			return result;
+		});
+		return watched[0];
+	}
+
+	@Override
+	public void close() {
+		if (cancellation != null) {
+			cancellation.cancel(false);
+		}
+	}
+
+	private Object watchStatement(Class<?> statementType, Statement statement, Connection watched) throws SQLException {
+		long remainingSeconds = TimeUnit.NANOSECONDS.toSeconds(expiresAtNanos - System.nanoTime());
+		statement.setQueryTimeout((int) Math.max(1, remainingSeconds + 1));
+		statements.add(statement);
+		return proxy(statementType, (method, args) -> {
+			if (method.getName().equals("getConnection")) {
+				return watched;
+			}
+			if (method.getName().startsWith("execute")) {
+				check();
+			}
+			return invoke(statement, method, args);
+		});
+	}
+
+	private void cancelStatements() {
+		cancelled = true;
+		for (Statement statement : statements) {
+			try {
+				statement.cancel();
+			} catch (SQLException ignore) {
+				// Statement has already finished or been closed
+			}
+		}
+	}
+
+	private interface Interceptor {
+		Object intercept(Method method, Object[] args) throws Throwable;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, Interceptor interceptor) {
+		return (T) Proxy.newProxyInstance(
+				Deadline.class.getClassLoader(),
+				new Class<?>[]{type},
+				(proxy, method, args) -> interceptor.intercept(method, args)
+		);
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException invocationTargetException) {
+			throw invocationTargetException.getCause();
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Non-durable {@link Persistence} for hot ephemeral data and fast test runs.
+ * Enforces the same users/posts foreign key as {@link TecocPersistence}:
+ * posts can only be created for existing users and users with posts cannot be deleted.
+ * Like the NOT NULL columns of {@link TecocPersistence} it rejects users and posts with missing fields.
+ */
+public class InMemoryPersistence implements Persistence {
+
+	private static class StoredUser {
+		private final User user;
+		private final int postCount;
+
+		private StoredUser(User user, int postCount) {
+			this.user = user;
+			this.postCount = postCount;
+		}
+
+		private StoredUser withPostCount(int newPostCount) {
+			return new StoredUser(user, newPostCount);
+		}
+	}
+
+	private final ConcurrentMap<Integer, StoredUser> users = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Integer, Post> posts = new ConcurrentHashMap<>();
+	private final AtomicInteger lastUserId = new AtomicInteger();
+	private final AtomicInteger lastPostId = new AtomicInteger();
+
+	@Override
+	public void reset() {
+		posts.clear();
+		users.clear();
+	}
+
+	@Override
+	public int countUsers() {
+		return users.size();
+	}
+
+	@Override
+	public int createUser(User newUser) {
+		requireNotNull(newUser.getName(), "users.name");
+		requireNotNull(newUser.getEmail(), "users.email");
+		int newId = lastUserId.incrementAndGet();
+		User user = new User(newId, newUser.getName(), newUser.getEmail(), Instant.now());
+		users.put(newId, new StoredUser(user, 0));
+		return newId;
+	}
+
+	@Override
+	public Optional<User> readUser(int userId) {
+		StoredUser stored = users.get(userId);
+		if (stored == null) {
+			return Optional.empty();
+		}
+		User user = stored.user;
+		return Optional.of(new User(user.getId(), user.getName(), user.getEmail(), user.getCreatedAt()));
+	}
+
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		Map<Integer, User> users = new HashMap<>();
+		for (int userId : userIds) {
+			readUser(userId).ifPresent(user -> users.put(userId, user));
+		}
+		return users;
+	}
+
+	@Override
+	public boolean deleteUser(int userId) {
+		// compute is atomic per key, so no post can be added to the user in between check and removal
+		StoredUser[] removed = new StoredUser[1];
+		users.computeIfPresent(userId, (id, stored) -> {
+			if (stored.postCount > 0) {
+				throw new IllegalStateException(String.format(
+						"Integrity constraint violation: user %d still has %d posts", userId, stored.postCount
+				));
+			}
+			removed[0] = stored;
+			return null;
+		});
+		return removed[0] != null;
+	}
+
+	@Override
+	public int countPosts() {
+		return posts.size();
+	}
+
+	@Override
+	public int createPost(Post newPost) {
+		requireNotNull(newPost.getTitle(), "posts.title");
+		int userId = newPost.getUserId();
+		StoredUser owner = users.computeIfPresent(userId, (id, stored) -> stored.withPostCount(stored.postCount + 1));
+		if (owner == null) {
+			throw new IllegalStateException(String.format(
+					"Integrity constraint violation: user %d does not exist", userId
+			));
+		}
+		int newId = lastPostId.incrementAndGet();
+		String body = newPost.getBody();
+		posts.put(newId, new Post(newId, userId, newPost.getTitle(), body, body.length(), null, Instant.now()));
+		return newId;
+	}
+
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		List<Integer> newIds = new ArrayList<>(newPosts.size());
+		try {
+			for (Post newPost : newPosts) {
+				newIds.add(createPost(newPost));
+			}
+			return newIds;
+		} catch (RuntimeException createException) {
+			newIds.forEach(this::deletePost);
+			throw createException;
+		}
+	}
+
+	@Override
+	public Optional<Post> readPost(int postId) {
+		Post post = posts.get(postId);
+		if (post == null) {
+			return Optional.empty();
+		}
+		return Optional.of(post.withIds(post.getId(), post.getUserId()));
+	}
+
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		Map<Integer, Post> posts = new HashMap<>();
+		for (int postId : postIds) {
+			readPost(postId).ifPresent(post -> posts.put(postId, post));
+		}
+		return posts;
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		Post removed = posts.remove(postId);
+		if (removed == null) {
+			return false;
+		}
+		users.computeIfPresent(removed.getUserId(), (id, stored) -> stored.withPostCount(stored.postCount - 1));
+		return true;
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		StoredUser stored = users.get(userId);
+		return stored == null ? 0 : stored.postCount;
+	}
+
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		Map<Integer, Integer> postCounts = new HashMap<>();
+		for (int userId : userIds) {
+			postCounts.put(userId, countPostsByUser(userId));
+		}
+		return postCounts;
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		long usersHash = 0;
+		for (StoredUser stored : users.values()) {
+			User user = stored.user;
+			usersHash += StateDigest.userHash(user.getId(), user.getName(), user.getEmail(), stored.postCount);
+		}
+		long postsHash = 0;
+		for (Post post : posts.values()) {
+			postsHash += StateDigest.postHash(post.getId(), post.getUserId(), post.getTitle(), post.getBody());
+		}
+		return new StateDigest(users.size(), usersHash, posts.size(), postsHash);
+	}
+
+	// Fails with the same root cause as a NOT NULL column of TecocPersistence
+	private static void requireNotNull(Object value, String column) {
+		if (value == null) {
+			throw new RuntimeException(new SQLIntegrityConstraintViolationException(
+					String.format("Integrity constraint violation: NOT NULL check constraint on %s", column)
+			));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+public interface Persistence {
+
+	void reset();
+
+	int countUsers();
+
+	int createUser(User newUser);
+
+	Optional<User> readUser(int userId);
+
+	/**
+	 * Reads all users in one go. Ids of users that do not exist are missing from the result.
+	 */
+	Map<Integer, User> readUsers(Collection<Integer> userIds);
+
+	/**
+	 * Deleting a user that still has posts violates the users/posts foreign key and fails with an exception.
+	 * Persistences with a soft delete mode, like {@link TecocPersistence#setSoftDelete(boolean)},
+	 * instead delete the user together with all of the user's posts when that mode is on.
+	 */
+	boolean deleteUser(int userId);
+
+	int countPosts();
+
+	int createPost(Post newPost);
+
+	/**
+	 * Creates all posts or none of them. If creating fails, no post of the batch remains.
+	 */
+	List<Integer> createPosts(List<Post> newPosts);
+
+	Optional<Post> readPost(int postId);
+
+	/**
+	 * Reads all posts in one go. Ids of posts that do not exist are missing from the result.
+	 */
+	Map<Integer, Post> readPosts(Collection<Integer> postIds);
+
+	boolean deletePost(int postId);
+
+	int countPostsByUser(int userId);
+
+	Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds);
+
+	/**
+	 * Summary of all users and posts that can be compared with the digest of another persistence or a model.
+	 */
+	StateDigest stateDigest();
+
+}
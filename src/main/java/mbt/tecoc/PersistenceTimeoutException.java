@@ -0,0 +1,33 @@
+package mbt.tecoc;
+
+import java.time.*;
+
+/**
+ * Thrown when a call of {@link TecocPersistence} does not finish before its deadline.
+ * The call's transaction has been rolled back.
+ */
+public class PersistenceTimeoutException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Duration timeout;
+	private final Duration elapsed;
+
+	PersistenceTimeoutException(Duration timeout, Duration elapsed, Throwable cause) {
+		super(String.format("Call timed out after %d ms, its deadline was %d ms", elapsed.toMillis(), timeout.toMillis()), cause);
+		this.timeout = timeout;
+		this.elapsed = elapsed;
+	}
+
+	/**
+	 * The time the call had left when it started, which is less than the timeout of {@code withTimeout}
+	 * if earlier calls have already used part of it.
+	 */
+	public Duration getTimeout() {
+		return timeout;
+	}
+
+	public Duration getElapsed() {
+		return elapsed;
+	}
+}
@@ -2,17 +2,21 @@ package mbt.tecoc;
 
 import java.sql.*;
 import java.time.*;
+import java.util.function.*;
 
 public class Post {
 
-	static Post fromResultSet(ResultSet resultSet) {
+	static Post fromResultSet(ResultSet resultSet, Function<Integer, String> bodyLoader) {
 		try {
 			int id = resultSet.getInt("id");
 			int userId = resultSet.getInt("user_id");
 			String title = resultSet.getString("title");
+			// body is only selected up to the inline body limit
 			String body = resultSet.getString("body");
+			int bodyLength = resultSet.getInt("body_length");
 			Instant userCreatedAt = resultSet.getTimestamp("created_at").toInstant();
-			return new Post(id, userId, title, body, userCreatedAt);
+			Supplier<String> lazyBody = body == null ? () -> bodyLoader.apply(id) : null;
+			return new Post(id, userId, title, body, bodyLength, lazyBody, userCreatedAt);
 		} catch (SQLException sqlException) {
 			throw new RuntimeException(sqlException);
 		}
@@ -22,20 +26,43 @@ public class Post {
 	private int userId;
 	private String title;
 	private String body;
+	private int bodyLength;
+	private Supplier<String> bodyLoader;
 	private Instant createdAt;
 
 	public Post(int userId, String title, String body) {
-		this(0, userId, title, body, null);
+		this(0, userId, title, body, requireBody(body).length(), null, null);
 	}
 
-	private Post(int id, int userId, String title, String body, Instant createdAt) {
+	private static String requireBody(String body) {
+		if (body == null) {
+			throw new IllegalArgumentException("body must not be null");
+		}
+		return body;
+	}
+
+	Post(
+			int id,
+			int userId,
+			String title,
+			String body,
+			int bodyLength,
+			Supplier<String> bodyLoader,
+			Instant createdAt
+	) {
 		this.id = id;
 		this.userId = userId;
 		this.title = title;
 		this.body = body;
+		this.bodyLength = bodyLength;
+		this.bodyLoader = bodyLoader;
 		this.createdAt = createdAt;
 	}
 
+	Post withIds(int id, int userId) {
+		return new Post(id, userId, title, body, bodyLength, bodyLoader, createdAt);
+	}
+
 	public int getId() {
 		return id;
 	}
@@ -52,10 +79,25 @@ public class Post {
 		return title;
 	}
 
+	/**
+	 * Bodies longer than the persistence's inline body limit are loaded on first access.
+	 */
 	public String getBody() {
+		if (!isBodyLoaded()) {
+			body = bodyLoader.get();
+			bodyLoader = null;
+		}
 		return body;
 	}
 
+	public boolean isBodyLoaded() {
+		return body != null;
+	}
+
+	public int getBodyLength() {
+		return bodyLength;
+	}
+
 	public Instant getCreatedAt() {
 		return createdAt;
 	}
@@ -63,11 +105,11 @@ public class Post {
 	@Override
 	public String toString() {
 		return String.format(
-				"Post{id=%d, userId=%d, title='%s', body='%s', createdAt=%s}",
+				"Post{id=%d, userId=%d, title='%s', body=%s, createdAt=%s}",
 				id,
 				userId,
 				title,
-				body,
+				isBodyLoaded() ? "'" + body + "'" : "<" + bodyLength + " chars not loaded>",
 				createdAt
 		);
 	}
@@ -0,0 +1,306 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/**
+ * Spreads users across several {@link TecocPersistence} shards and keeps each user's posts on the user's shard.
+ * Ids handed out are shard-encoded ({@code localId * shardCount + shardIndex}),
+ * so every id based operation is routed to exactly one shard.
+ * Counts are gathered from all shards in parallel.
+ */
+public class ShardedTecocPersistence implements Persistence, AutoCloseable {
+
+	private final List<TecocPersistence> shards;
+	private final ExecutorService scatterGather;
+	private final Map<ChangeListener, List<ChangeListener>> shardListeners = new ConcurrentHashMap<>();
+
+	public ShardedTecocPersistence(List<TecocPersistence> shards) {
+		if (shards.isEmpty()) {
+			throw new IllegalArgumentException("At least one shard is needed");
+		}
+		this.shards = new ArrayList<>(shards);
+		this.scatterGather = Executors.newFixedThreadPool(shards.size(), runnable -> {
+			Thread thread = new Thread(runnable, "tecoc-scatter-gather");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public int shardCount() {
+		return shards.size();
+	}
+
+	public int shardOf(int id) {
+		return Math.floorMod(id, shards.size());
+	}
+
+	public void initialize() {
+		onAllShards(shard -> {
+			shard.initialize();
+			return null;
+		});
+	}
+
+	@Override
+	public void reset() {
+		onAllShards(shard -> {
+			shard.reset();
+			return null;
+		});
+	}
+
+	public void close() throws SQLException {
+		scatterGather.shutdown();
+		SQLException closeException = null;
+		for (TecocPersistence shard : shards) {
+			try {
+				shard.close();
+			} catch (SQLException sqlException) {
+				if (closeException == null) {
+					closeException = sqlException;
+				} else {
+					closeException.addSuppressed(sqlException);
+				}
+			}
+		}
+		if (closeException != null) {
+			throw closeException;
+		}
+	}
+
+	public void addChangeListener(ChangeListener listener) {
+		List<ChangeListener> listeners = new ArrayList<>();
+		for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+			int index = shardIndex;
+			ChangeListener shardListener = event -> listener.onChange(new ChangeEvent(
+					event.getOffset(),
+					event.getEntity(),
+					event.getKind(),
+					globalId(event.getEntityId(), index)
+			));
+			shards.get(shardIndex).addChangeListener(shardListener);
+			listeners.add(shardListener);
+		}
+		shardListeners.put(listener, listeners);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		List<ChangeListener> listeners = shardListeners.remove(listener);
+		if (listeners == null) {
+			return;
+		}
+		for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+			shards.get(shardIndex).removeChangeListener(listeners.get(shardIndex));
+		}
+	}
+
+	@Override
+	public int countUsers() {
+		return onAllShards(TecocPersistence::countUsers).stream().mapToInt(Integer::intValue).sum();
+	}
+
+	@Override
+	public int createUser(User newUser) {
+		int shardIndex = Math.floorMod(newUser.getEmail().hashCode(), shards.size());
+		int localId = shards.get(shardIndex).createUser(newUser);
+		return localId == 0 ? 0 : globalId(localId, shardIndex);
+	}
+
+	@Override
+	public Optional<User> readUser(int userId) {
+		int shardIndex = shardOf(userId);
+		Optional<User> optionalUser = shards.get(shardIndex).readUser(localId(userId));
+		optionalUser.ifPresent(user -> user.setId(userId));
+		return optionalUser;
+	}
+
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		Map<Integer, User> users = new HashMap<>();
+		localIdsByShard(userIds).forEach((shardIndex, localIds) -> {
+			shards.get(shardIndex).readUsers(localIds).forEach((localId, user) -> {
+				int userId = globalId(localId, shardIndex);
+				user.setId(userId);
+				users.put(userId, user);
+			});
+		});
+		return users;
+	}
+
+	@Override
+	public boolean deleteUser(int userId) {
+		return shards.get(shardOf(userId)).deleteUser(localId(userId));
+	}
+
+	@Override
+	public int countPosts() {
+		return onAllShards(TecocPersistence::countPosts).stream().mapToInt(Integer::intValue).sum();
+	}
+
+	@Override
+	public int createPost(Post newPost) {
+		int shardIndex = shardOf(newPost.getUserId());
+		int localId = shards.get(shardIndex).createPost(toLocalPost(newPost));
+		return localId == 0 ? 0 : globalId(localId, shardIndex);
+	}
+
+	/**
+	 * Each shard creates its part of the posts in its own transaction. When a shard fails,
+	 * the posts already created on other shards are deleted again before the failure is rethrown.
+	 * Concurrent readers can see those posts for a short time.
+	 */
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		Map<Integer, List<Post>> postsByShard = new TreeMap<>();
+		for (Post newPost : newPosts) {
+			postsByShard.computeIfAbsent(shardOf(newPost.getUserId()), ignore -> new ArrayList<>())
+						.add(toLocalPost(newPost));
+		}
+		Map<Integer, List<Integer>> createdByShard = new HashMap<>();
+		try {
+			postsByShard.forEach((shardIndex, posts) -> {
+				createdByShard.put(shardIndex, shards.get(shardIndex).createPosts(posts));
+			});
+		} catch (RuntimeException failure) {
+			deleteCreatedPosts(createdByShard, failure);
+			throw failure;
+		}
+		Map<Integer, Iterator<Integer>> localIdsByShard = new HashMap<>();
+		createdByShard.forEach((shardIndex, localIds) -> localIdsByShard.put(shardIndex, localIds.iterator()));
+		List<Integer> newIds = new ArrayList<>(newPosts.size());
+		for (Post newPost : newPosts) {
+			int shardIndex = shardOf(newPost.getUserId());
+			int localId = localIdsByShard.get(shardIndex).next();
+			newIds.add(localId == 0 ? 0 : globalId(localId, shardIndex));
+		}
+		return newIds;
+	}
+
+	private void deleteCreatedPosts(Map<Integer, List<Integer>> createdByShard, RuntimeException failure) {
+		createdByShard.forEach((shardIndex, localIds) -> {
+			for (int localId : localIds) {
+				try {
+					shards.get(shardIndex).deletePost(localId);
+				} catch (RuntimeException deleteFailure) {
+					failure.addSuppressed(deleteFailure);
+				}
+			}
+		});
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		return shards.get(shardOf(userId)).countPostsByUser(localId(userId));
+	}
+
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		Map<Integer, Integer> postCounts = new HashMap<>();
+		localIdsByShard(userIds).forEach((shardIndex, localIds) -> {
+			shards.get(shardIndex).countPostsByUsers(localIds).forEach(
+					(localId, count) -> postCounts.put(globalId(localId, shardIndex), count)
+			);
+		});
+		return postCounts;
+	}
+
+	@Override
+	public Optional<Post> readPost(int postId) {
+		int shardIndex = shardOf(postId);
+		return shards.get(shardIndex).readPost(localId(postId))
+					 .map(post -> post.withIds(postId, globalId(post.getUserId(), shardIndex)));
+	}
+
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		Map<Integer, Post> posts = new HashMap<>();
+		localIdsByShard(postIds).forEach((shardIndex, localIds) -> {
+			shards.get(shardIndex).readPosts(localIds).forEach((localId, post) -> {
+				int postId = globalId(localId, shardIndex);
+				posts.put(postId, post.withIds(postId, globalId(post.getUserId(), shardIndex)));
+			});
+		});
+		return posts;
+	}
+
+	public Optional<String> readPostBody(int postId) {
+		return shards.get(shardOf(postId)).readPostBody(localId(postId));
+	}
+
+	public <T> Optional<T> streamPostBody(int postId, TecocPersistence.WithBodyReader<T> bodyReader) {
+		return shards.get(shardOf(postId)).streamPostBody(localId(postId), bodyReader);
+	}
+
+	public void setInlineBodyLimit(int maxChars) {
+		shards.forEach(shard -> shard.setInlineBodyLimit(maxChars));
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		return shards.get(shardOf(postId)).deletePost(localId(postId));
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		return onAllShardsWithIndex((shardIndex, shard) -> shard.stateDigest(shards.size(), shardIndex))
+					   .stream()
+					   .reduce(new StateDigest(0, 0, 0, 0), StateDigest::plus);
+	}
+
+	private Post toLocalPost(Post post) {
+		return new Post(localId(post.getUserId()), post.getTitle(), post.getBody());
+	}
+
+	private Map<Integer, List<Integer>> localIdsByShard(Collection<Integer> ids) {
+		Map<Integer, List<Integer>> localIdsByShard = new HashMap<>();
+		for (int id : ids) {
+			localIdsByShard.computeIfAbsent(shardOf(id), ignore -> new ArrayList<>()).add(localId(id));
+		}
+		return localIdsByShard;
+	}
+
+	private int globalId(int localId, int shardIndex) {
+		try {
+			return Math.addExact(Math.multiplyExact(localId, shards.size()), shardIndex);
+		} catch (ArithmeticException overflow) {
+			throw new IllegalStateException(String.format(
+					"Local id %d of shard %d does not fit into a global id for %d shards", localId, shardIndex, shards.size()
+			), overflow);
+		}
+	}
+
+	private int localId(int globalId) {
+		return Math.floorDiv(globalId, shards.size());
+	}
+
+	private <T> List<T> onAllShards(Function<TecocPersistence, T> operation) {
+		return onAllShardsWithIndex((shardIndex, shard) -> operation.apply(shard));
+	}
+
+	private <T> List<T> onAllShardsWithIndex(BiFunction<Integer, TecocPersistence, T> operation) {
+		List<Future<T>> futures = new ArrayList<>(shards.size());
+		for (int shardIndex = 0; shardIndex < shards.size(); shardIndex++) {
+			int index = shardIndex;
+			futures.add(scatterGather.submit(() -> operation.apply(index, shards.get(index))));
+		}
+		List<T> results = new ArrayList<>(shards.size());
+		for (Future<T> future : futures) {
+			try {
+				results.add(future.get());
+			} catch (InterruptedException interruptedException) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(interruptedException);
+			} catch (ExecutionException executionException) {
+				Throwable cause = executionException.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+		return results;
+	}
+}
@@ -0,0 +1,95 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+/**
+ * Order-independent summary of all users and posts: row counts plus the sum of a hash per row.
+ * Two persistences with equal digests hold the same rows with very high probability.
+ * Creation timestamps are not part of the digest.
+ * <p>
+ * The row hashes are public static so that the database can call them as Java routines
+ * and compute the digest in a single query.
+ */
+public class StateDigest {
+
+	public static long userHash(int id, String name, String email, int postCount) {
+		long hash = mix(id);
+		hash = mix(hash ^ name.hashCode());
+		hash = mix(hash ^ email.hashCode());
+		return mix(hash ^ postCount);
+	}
+
+	public static long postHash(int id, int userId, String title, String body) {
+		long hash = mix(~id);
+		hash = mix(hash ^ userId);
+		hash = mix(hash ^ title.hashCode());
+		return mix(hash ^ body.hashCode());
+	}
+
+	// Finalizer of SplitMix64, spreads every input bit over the whole hash
+	private static long mix(long value) {
+		value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+		value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+		return value ^ (value >>> 31);
+	}
+
+	private final int userCount;
+	private final long usersHash;
+	private final int postCount;
+	private final long postsHash;
+
+	public StateDigest(int userCount, long usersHash, int postCount, long postsHash) {
+		this.userCount = userCount;
+		this.usersHash = usersHash;
+		this.postCount = postCount;
+		this.postsHash = postsHash;
+	}
+
+	public int userCount() {
+		return userCount;
+	}
+
+	public int postCount() {
+		return postCount;
+	}
+
+	public boolean usersDiffer(StateDigest other) {
+		return userCount != other.userCount || usersHash != other.usersHash;
+	}
+
+	public boolean postsDiffer(StateDigest other) {
+		return postCount != other.postCount || postsHash != other.postsHash;
+	}
+
+	/**
+	 * Digests can be summed up since the row hashes are, e.g. over the shards of a database.
+	 */
+	public StateDigest plus(StateDigest other) {
+		return new StateDigest(
+				userCount + other.userCount,
+				usersHash + other.usersHash,
+				postCount + other.postCount,
+				postsHash + other.postsHash
+		);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+		StateDigest that = (StateDigest) o;
+		return !usersDiffer(that) && !postsDiffer(that);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(userCount, usersHash, postCount, postsHash);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"StateDigest{users=%d/%016x, posts=%d/%016x}", userCount, usersHash, postCount, postsHash
+		);
+	}
+}
@@ -1,9 +1,15 @@
 package mbt.tecoc;
 
+import java.io.*;
 import java.sql.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
 
-public class TecocPersistence implements AutoCloseable {
+import mbt.tecoc.ChangeEvent.*;
+
+public class TecocPersistence implements Persistence, AutoCloseable {
 
 	private interface WithConnection<T> {
 		T run(Connection connection) throws SQLException;
@@ -13,12 +19,52 @@ public class TecocPersistence implements AutoCloseable {
 		T run(S statement) throws SQLException;
 	}
 
+	private interface WithRow {
+		void read(ResultSet resultSet) throws SQLException;
+	}
+
+	public interface WithBodyReader<T> {
+		T read(Reader body) throws IOException;
+	}
+
+	public static final int DEFAULT_INLINE_BODY_LIMIT = 64 * 1024;
+	public static final int MAX_IN_LIST_SIZE = 500;
+	public static final int DEFAULT_WARM_UP_ROUNDS = 2_000;
+
+	private static final String WARM_UP_SCHEMA = "TECOC_WARM_UP";
+
 	private Connection connection;
+	private final Connection readConnection;
+	private volatile boolean readYourWrites = false;
+	private volatile Duration defaultTimeout = null;
+	private final ThreadLocal<Long> callDeadline = new ThreadLocal<>();
+	private volatile int inlineBodyLimit = DEFAULT_INLINE_BODY_LIMIT;
+	private volatile boolean softDelete = false;
+
+	private final List<ChangeListener> changeListeners = new CopyOnWriteArrayList<>();
+	private final List<ChangeEvent> uncommittedChanges = new ArrayList<>();
 
 	public TecocPersistence(Connection connection) {
+		this(connection, null);
+	}
+
+	/**
+	 * All reads, including multi-gets, counts, post bodies, change events and {@link #stateDigest()},
+	 * run on {@code readConnection} in read only transactions with isolation level read committed,
+	 * so that they do not queue behind calls on {@code connection}. All writes use {@code connection}.
+	 * In HSQLDB's default LOCKS transaction mode reads still wait for table locks of uncommitted writes,
+	 * run the database with {@code hsqldb.tx=mvcc} to avoid that.
+	 */
+	public TecocPersistence(Connection connection, Connection readConnection) {
 		this.connection = connection;
+		this.readConnection = readConnection;
 		try {
 			this.connection.setAutoCommit(false);
+			if (readConnection != null) {
+				readConnection.setAutoCommit(false);
+				readConnection.setReadOnly(true);
+				readConnection.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+			}
 		} catch (SQLException sqlException) {
 			throw new RuntimeException(sqlException);
 		}
@@ -30,38 +76,365 @@ public class TecocPersistence implements AutoCloseable {
 						"id SERIAL PRIMARY KEY, " +
 						"name TEXT NOT NULL, " +
 						"email TEXT NOT NULL, " +
-						"created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP" +
+						"post_count INTEGER DEFAULT 0 NOT NULL, " +
+						"created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP, " +
+						"deleted_at TIMESTAMP WITH TIME ZONE" +
 						");",
 				"CREATE TABLE IF NOT EXISTS posts(" +
 						"id SERIAL PRIMARY KEY, " +
 						"user_id INTEGER NOT NULL REFERENCES users(id), " +
 						"title TEXT NOT NULL, " +
 						"body TEXT NOT NULL, " +
+						"body_length INTEGER NOT NULL, " +
+						"created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP, " +
+						"deleted_at TIMESTAMP WITH TIME ZONE" +
+						");"
+		);
+		addMissingColumns();
+		executeStatements(
+				// HSQLDB has no partial indexes, so tombstones are indexed together with live rows
+				"CREATE INDEX IF NOT EXISTS users_deleted_at ON users(deleted_at);",
+				"CREATE INDEX IF NOT EXISTS posts_deleted_at ON posts(deleted_at);",
+				"CREATE TABLE IF NOT EXISTS change_events(" +
+						"id BIGSERIAL PRIMARY KEY, " +
+						"entity VARCHAR(16) NOT NULL, " +
+						"kind VARCHAR(16) NOT NULL, " +
+						"entity_id INTEGER NOT NULL, " +
 						"created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP" +
 						");"
 		);
+		createDigestFunctions();
+	}
+
+	// Tables created before a column was introduced get it added and, where needed, filled from existing rows
+	private void addMissingColumns() {
+		useStatement(statement -> {
+			Set<String> columns = new HashSet<>();
+			ResultSet resultSet = statement.executeQuery(
+					"SELECT table_name, column_name FROM INFORMATION_SCHEMA.COLUMNS " +
+							"WHERE table_schema = CURRENT_SCHEMA AND table_name IN ('USERS', 'POSTS')"
+			);
+			while (resultSet.next()) {
+				columns.add(resultSet.getString("table_name") + "." + resultSet.getString("column_name"));
+			}
+			if (!columns.contains("USERS.POST_COUNT")) {
+				statement.executeUpdate("ALTER TABLE users ADD COLUMN IF NOT EXISTS post_count INTEGER DEFAULT 0 NOT NULL");
+				statement.executeUpdate(
+						"UPDATE users SET post_count = (SELECT count(*) FROM posts WHERE posts.user_id = users.id)"
+				);
+			}
+			if (!columns.contains("USERS.DELETED_AT")) {
+				statement.executeUpdate("ALTER TABLE users ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP WITH TIME ZONE");
+			}
+			if (!columns.contains("POSTS.BODY_LENGTH")) {
+				statement.executeUpdate("ALTER TABLE posts ADD COLUMN IF NOT EXISTS body_length INTEGER DEFAULT 0 NOT NULL");
+				statement.executeUpdate("UPDATE posts SET body_length = CHAR_LENGTH(body)");
+			}
+			if (!columns.contains("POSTS.DELETED_AT")) {
+				statement.executeUpdate("ALTER TABLE posts ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP WITH TIME ZONE");
+			}
+			return null;
+		});
+	}
+
+	// HSQLDB has no CREATE FUNCTION IF NOT EXISTS. Functions are looked up in the current schema only.
+	private void createDigestFunctions() {
+		useStatement(statement -> {
+			ResultSet resultSet = statement.executeQuery(
+					"SELECT count(*) AS count FROM INFORMATION_SCHEMA.ROUTINES " +
+							"WHERE ROUTINE_SCHEMA = CURRENT_SCHEMA AND ROUTINE_NAME IN ('TECOC_USER_HASH', 'TECOC_POST_HASH')"
+			);
+			resultSet.next();
+			if (resultSet.getInt("count") == 0) {
+				statement.execute(
+						"CREATE FUNCTION tecoc_user_hash(id INTEGER, name TEXT, email TEXT, post_count INTEGER) " +
+								"RETURNS BIGINT LANGUAGE JAVA DETERMINISTIC NO SQL " +
+								"EXTERNAL NAME 'CLASSPATH:mbt.tecoc.StateDigest.userHash'"
+				);
+				statement.execute(
+						"CREATE FUNCTION tecoc_post_hash(id INTEGER, user_id INTEGER, title TEXT, body TEXT) " +
+								"RETURNS BIGINT LANGUAGE JAVA DETERMINISTIC NO SQL " +
+								"EXTERNAL NAME 'CLASSPATH:mbt.tecoc.StateDigest.postHash'"
+				);
+			}
+			return null;
+		});
 	}
 
+	@Override
 	public void reset() {
 		useStatement(statement -> {
 			statement.executeUpdate("DELETE FROM posts");
 			statement.executeUpdate("DELETE FROM users");
+			statement.executeUpdate("DELETE FROM change_events");
 			return null;
 		});
 	}
 
+	/**
+	 * Post bodies longer than {@code maxChars} are not read together with the post
+	 * but loaded on first access of {@link Post#getBody()}.
+	 */
+	public void setInlineBodyLimit(int maxChars) {
+		this.inlineBodyLimit = maxChars;
+	}
+
+	/**
+	 * In soft delete mode {@link #deleteUser(int)} and {@link #deletePost(int)} only mark rows as deleted.
+	 * Deleting a user then also deletes the user's posts. Marked rows are invisible to all reads
+	 * and are removed later through {@link #purgeDeleted(int)}, usually by a {@link TombstonePurger}.
+	 */
+	public void setSoftDelete(boolean softDelete) {
+		this.softDelete = softDelete;
+	}
+
+	/**
+	 * Physically removes up to {@code batchSize} soft deleted rows in one transaction.
+	 * Posts go first; users are only removed once none of their posts is left.
+	 *
+	 * @return the number of removed rows
+	 */
+	public int purgeDeleted(int batchSize) {
+		return useConnection(c -> {
+			try (
+					PreparedStatement purgePosts = c.prepareStatement(
+							"DELETE FROM posts WHERE deleted_at IS NOT NULL LIMIT ?"
+					);
+					PreparedStatement purgeUsers = c.prepareStatement(
+							"DELETE FROM users WHERE deleted_at IS NOT NULL " +
+									"AND NOT EXISTS (SELECT 1 FROM posts WHERE posts.user_id = users.id) LIMIT ?"
+					)
+			) {
+				purgePosts.setInt(1, batchSize);
+				int purged = purgePosts.executeUpdate();
+				if (purged < batchSize) {
+					purgeUsers.setInt(1, batchSize - purged);
+					purged += purgeUsers.executeUpdate();
+				}
+				return purged;
+			}
+		});
+	}
+
+	int countTombstones() {
+		return useStatement(statement -> {
+			ResultSet resultSet = statement.executeQuery(
+					"SELECT " +
+							"(SELECT count(*) FROM users WHERE deleted_at IS NOT NULL) + " +
+							"(SELECT count(*) FROM posts WHERE deleted_at IS NOT NULL) AS count " +
+							"FROM (VALUES(0))"
+			);
+			resultSet.next();
+			return resultSet.getInt("count");
+		});
+	}
+
+	/**
+	 * With read your writes all reads use the primary connection, so that they see every write that
+	 * has returned before, also when the read connection goes to a lagging replica.
+	 */
+	public void setReadYourWrites(boolean readYourWrites) {
+		this.readYourWrites = readYourWrites;
+	}
+
+	/**
+	 * Every call that takes longer than {@code timeout} is cancelled, rolled back
+	 * and fails with a {@link PersistenceTimeoutException}. {@code null} means no timeout.
+	 */
+	public void setDefaultTimeout(Duration timeout) {
+		this.defaultTimeout = timeout;
+	}
+
+	/**
+	 * All calls made by the current thread within {@code calls} must finish before {@code timeout} from now.
+	 * A shorter default timeout still applies to each single call.
+	 */
+	public <T> T withTimeout(Duration timeout, Supplier<T> calls) {
+		Long outerDeadline = callDeadline.get();
+		long deadline = System.nanoTime() + timeout.toNanos();
+		if (outerDeadline != null && outerDeadline - deadline < 0) {
+			deadline = outerDeadline;
+		}
+		callDeadline.set(deadline);
+		try {
+			return calls.get();
+		} finally {
+			if (outerDeadline == null) {
+				callDeadline.remove();
+			} else {
+				callDeadline.set(outerDeadline);
+			}
+		}
+	}
+
+	/**
+	 * Listeners are called on the writing thread after the write has been committed and the connection released.
+	 * Writes from different threads can therefore be published concurrently and out of commit order.
+	 * An exception thrown by a listener goes to the thread's uncaught exception handler, the write still succeeds.
+	 */
+	public void addChangeListener(ChangeListener listener) {
+		changeListeners.add(listener);
+	}
+
+	public void removeChangeListener(ChangeListener listener) {
+		changeListeners.remove(listener);
+	}
+
+	public List<ChangeEvent> readChangeEvents(long afterOffset, int limit) {
+		return useReadPreparedStatement(
+				"SELECT * FROM change_events WHERE id > ? ORDER BY id",
+				statement -> {
+					statement.setLong(1, afterOffset);
+					statement.setMaxRows(limit);
+					ResultSet resultSet = statement.executeQuery();
+					List<ChangeEvent> events = new ArrayList<>();
+					while (resultSet.next()) {
+						events.add(ChangeEvent.fromResultSet(resultSet));
+					}
+					return events;
+				}
+		);
+	}
+
+	public WarmUpReport warmUp() {
+		return warmUp(DEFAULT_WARM_UP_ROUNDS);
+	}
+
+	/**
+	 * Runs {@code rounds} rounds of all operations against a scratch schema on this persistence's connections,
+	 * so that classes are loaded, every statement has been compiled and the hot paths are JIT compiled
+	 * before the first real call. The scratch schema is dropped afterwards, change listeners are not notified.
+	 * Calls from other threads wait until the warm-up has finished.
+	 */
+	public WarmUpReport warmUp(int rounds) {
+		synchronized (this) {
+			synchronized (readConnection == null ? this : readConnection) {
+				long start = System.nanoTime();
+				try {
+					String schema = connection.getSchema();
+					executeStatements(
+							"DROP SCHEMA IF EXISTS " + WARM_UP_SCHEMA + " CASCADE",
+							"CREATE SCHEMA " + WARM_UP_SCHEMA
+					);
+					setSchema(WARM_UP_SCHEMA);
+					try {
+						TecocPersistence scratch = new TecocPersistence(connection, readConnection);
+						scratch.setInlineBodyLimit(inlineBodyLimit);
+						scratch.setSoftDelete(softDelete);
+						scratch.initialize();
+						Map<String, long[]> nanos = new LinkedHashMap<>();
+						for (int round = 0; round < rounds; round++) {
+							scratch.warmUpRound(nanos, rounds, round);
+						}
+						return new WarmUpReport(rounds, Duration.ofNanos(System.nanoTime() - start), nanos);
+					} finally {
+						setSchema(schema);
+						executeStatements("DROP SCHEMA " + WARM_UP_SCHEMA + " CASCADE");
+					}
+				} catch (SQLException sqlException) {
+					throw new RuntimeException(sqlException);
+				}
+			}
+		}
+	}
+
+	private void setSchema(String schema) throws SQLException {
+		connection.setSchema(schema);
+		if (readConnection != null) {
+			readConnection.setSchema(schema);
+		}
+	}
+
+	private void warmUpRound(Map<String, long[]> nanos, int rounds, int round) {
+		String body = "Warm-up body " + round;
+		int userId = timed(nanos, rounds, round, "createUser", () -> createUser(new User("Warm-up " + round, "warm-up@example.com")));
+		int postId = timed(nanos, rounds, round, "createPost", () -> createPost(new Post(userId, "Warm-up", body)));
+		List<Integer> postIds = timed(nanos, rounds, round, "createPosts", () -> createPosts(Arrays.asList(
+				new Post(userId, "Warm-up", body), new Post(userId, "Warm-up", body)
+		)));
+		timed(nanos, rounds, round, "readUser", () -> readUser(userId));
+		timed(nanos, rounds, round, "readUsers", () -> readUsers(Collections.singletonList(userId)));
+		timed(nanos, rounds, round, "readPost", () -> readPost(postId).map(Post::getBody));
+		timed(nanos, rounds, round, "readPosts", () -> readPosts(postIds));
+		timed(nanos, rounds, round, "readPostBody", () -> readPostBody(postId));
+		timed(nanos, rounds, round, "countUsers", this::countUsers);
+		timed(nanos, rounds, round, "countPosts", this::countPosts);
+		timed(nanos, rounds, round, "countPostsByUser", () -> countPostsByUser(userId));
+		timed(nanos, rounds, round, "countPostsByUsers", () -> countPostsByUsers(Collections.singletonList(userId)));
+		timed(nanos, rounds, round, "readChangeEvents", () -> readChangeEvents(0, 10));
+		timed(nanos, rounds, round, "stateDigest", this::stateDigest);
+		timed(nanos, rounds, round, "deletePost", () -> deletePost(postId));
+		postIds.forEach(this::deletePost);
+		timed(nanos, rounds, round, "deleteUser", () -> deleteUser(userId));
+		if (softDelete) {
+			timed(nanos, rounds, round, "purgeDeleted", () -> purgeDeleted(10));
+		}
+	}
+
+	private static <T> T timed(Map<String, long[]> nanos, int rounds, int round, String operation, Supplier<T> call) {
+		long start = System.nanoTime();
+		T result = call.get();
+		nanos.computeIfAbsent(operation, ignore -> new long[rounds])[round] = System.nanoTime() - start;
+		return result;
+	}
+
 	public void close() throws SQLException {
 		connection.close();
+		if (readConnection != null) {
+			readConnection.close();
+		}
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		return stateDigest(1, 0);
+	}
+
+	/**
+	 * Ids are mapped to {@code id * idScale + idOffset} before hashing, so that shards can contribute their global ids.
+	 */
+	StateDigest stateDigest(int idScale, int idOffset) {
+		return useReadOnlyTransaction(c -> {
+			try (PreparedStatement statement = c.prepareStatement(
+					"SELECT " +
+							"(SELECT count(*) FROM users WHERE deleted_at IS NULL) AS user_count, " +
+							"(SELECT COALESCE(SUM(tecoc_user_hash(" +
+							"CAST(id * ? + ? AS INTEGER), name, email, post_count" +
+							")), 0) FROM users WHERE deleted_at IS NULL) AS users_hash, " +
+							"(SELECT count(*) FROM posts WHERE deleted_at IS NULL) AS post_count, " +
+							"(SELECT COALESCE(SUM(tecoc_post_hash(" +
+							"CAST(id * ? + ? AS INTEGER), CAST(user_id * ? + ? AS INTEGER), title, body" +
+							")), 0) FROM posts WHERE deleted_at IS NULL) AS posts_hash " +
+							"FROM (VALUES(0))"
+			)) {
+				int index = 1;
+				for (int i = 0; i < 3; i++) {
+					statement.setInt(index++, idScale);
+					statement.setInt(index++, idOffset);
+				}
+				ResultSet resultSet = statement.executeQuery();
+				resultSet.next();
+				// Sums are DECIMAL in the database, the low 64 bits equal the overflowing sum in Java
+				return new StateDigest(
+						resultSet.getInt("user_count"),
+						resultSet.getBigDecimal("users_hash").longValue(),
+						resultSet.getInt("post_count"),
+						resultSet.getBigDecimal("posts_hash").longValue()
+				);
+			}
+		});
 	}
 
+	@Override
 	public int countUsers() {
-		return useStatement(statement -> {
-			ResultSet resultSet = statement.executeQuery("SELECT count(*) as count FROM users");
+		return useReadStatement(statement -> {
+			ResultSet resultSet = statement.executeQuery("SELECT count(*) as count FROM users WHERE deleted_at IS NULL");
 			resultSet.next(); // count query always has one result row
 			return resultSet.getInt("count");
 		});
 	}
 
+	@Override
 	public int createUser(User newUser) {
 		return usePreparedStatement(
 				"INSERT INTO users(name, email) VALUES(?, ?)",
@@ -72,7 +445,9 @@ public class TecocPersistence implements AutoCloseable {
 					if (count > 0) {
 						ResultSet generatedKeys = statement.getGeneratedKeys();
 						generatedKeys.next();
-						return generatedKeys.getInt("id");
+						int newId = generatedKeys.getInt("id");
+						recordChange(statement.getConnection(), Entity.USER, Kind.CREATED, newId);
+						return newId;
 					} else {
 						return 0;
 					}
@@ -80,9 +455,10 @@ public class TecocPersistence implements AutoCloseable {
 		);
 	}
 
+	@Override
 	public Optional<User> readUser(int userId) {
-		return usePreparedStatement(
-				"SELECT * FROM users WHERE id=?",
+		return useReadPreparedStatement(
+				"SELECT * FROM users WHERE id=? AND deleted_at IS NULL",
 				statement -> {
 					statement.setInt(1, userId);
 					ResultSet resultSet = statement.executeQuery();
@@ -95,37 +471,127 @@ public class TecocPersistence implements AutoCloseable {
 		);
 	}
 
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		Map<Integer, User> users = new HashMap<>();
+		if (userIds.isEmpty()) {
+			return users;
+		}
+		return useReadOnlyTransaction(c -> {
+			forEachRowWithIds(
+					c, "SELECT * FROM users WHERE id IN (%s)", userIds,
+					skipDeleted(resultSet -> {
+						User user = User.fromResultSet(resultSet);
+						users.put(user.getId(), user);
+					})
+			);
+			return users;
+		});
+	}
+
+	@Override
 	public boolean deleteUser(int userId) {
+		if (softDelete) {
+			return softDeleteUser(userId);
+		}
 		return usePreparedStatement(
 				"DELETE FROM users WHERE id=?",
 				statement -> {
 					statement.setInt(1, userId);
 					int count = statement.executeUpdate();
+					if (count > 0) {
+						recordChange(statement.getConnection(), Entity.USER, Kind.DELETED, userId);
+					}
 					return count > 0;
 				}
 		);
 	}
 
+	// Only the user's deletion is recorded as change event, its posts vanish together with the user
+	private boolean softDeleteUser(int userId) {
+		return useConnection(c -> {
+			try (
+					PreparedStatement markUser = c.prepareStatement(
+							"UPDATE users SET deleted_at = CURRENT_TIMESTAMP WHERE id=? AND deleted_at IS NULL"
+					);
+					PreparedStatement markPosts = c.prepareStatement(
+							"UPDATE posts SET deleted_at = CURRENT_TIMESTAMP WHERE user_id=? AND deleted_at IS NULL"
+					)
+			) {
+				markUser.setInt(1, userId);
+				if (markUser.executeUpdate() == 0) {
+					return false;
+				}
+				markPosts.setInt(1, userId);
+				markPosts.executeUpdate();
+				recordChange(c, Entity.USER, Kind.DELETED, userId);
+				return true;
+			}
+		});
+	}
+
+	@Override
 	public int countPosts() {
-		return useStatement(statement -> {
-			ResultSet resultSet = statement.executeQuery("SELECT count(*) as count FROM posts");
+		return useReadStatement(statement -> {
+			ResultSet resultSet = statement.executeQuery("SELECT count(*) as count FROM posts WHERE deleted_at IS NULL");
 			resultSet.next(); // count query always has one result row
 			return resultSet.getInt("count");
 		});
 	}
 
+	@Override
 	public int createPost(Post newPost) {
-		return usePreparedStatement(
-				"INSERT INTO posts(user_id, title, body) VALUES(?, ?, ?)",
-				statement -> {
-					statement.setInt(1, newPost.getUserId());
-					statement.setString(2, newPost.getTitle());
-					statement.setString(3, newPost.getBody());
-					int count = statement.executeUpdate();
+		return createPosts(Collections.singletonList(newPost)).get(0);
+	}
+
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		return useConnection(c -> {
+			try (
+					PreparedStatement insertPost = c.prepareStatement(
+							"INSERT INTO posts(user_id, title, body, body_length) VALUES(?, ?, ?, ?)",
+							Statement.RETURN_GENERATED_KEYS
+					);
+					PreparedStatement incrementPostCount = c.prepareStatement(
+							"UPDATE users SET post_count = post_count + 1 WHERE id=? AND deleted_at IS NULL"
+					)
+			) {
+				List<Integer> newIds = new ArrayList<>(newPosts.size());
+				for (Post newPost : newPosts) {
+					insertPost.setInt(1, newPost.getUserId());
+					insertPost.setString(2, newPost.getTitle());
+					insertPost.setString(3, newPost.getBody());
+					insertPost.setInt(4, newPost.getBody().length());
+					int count = insertPost.executeUpdate();
 					if (count > 0) {
-						ResultSet generatedKeys = statement.getGeneratedKeys();
+						ResultSet generatedKeys = insertPost.getGeneratedKeys();
 						generatedKeys.next();
-						return generatedKeys.getInt("id");
+						int newId = generatedKeys.getInt("id");
+						incrementPostCount.setInt(1, newPost.getUserId());
+						if (incrementPostCount.executeUpdate() == 0) {
+							// Only soft deleted users get here, for all others the foreign key fails first
+							throw new SQLException(String.format("User %d has been deleted", newPost.getUserId()));
+						}
+						recordChange(c, Entity.POST, Kind.CREATED, newId);
+						newIds.add(newId);
+					} else {
+						newIds.add(0);
+					}
+				}
+				return newIds;
+			}
+		});
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		return useReadPreparedStatement(
+				"SELECT post_count FROM users WHERE id=? AND deleted_at IS NULL",
+				statement -> {
+					statement.setInt(1, userId);
+					ResultSet resultSet = statement.executeQuery();
+					if (resultSet.next()) {
+						return resultSet.getInt("post_count");
 					} else {
 						return 0;
 					}
@@ -133,14 +599,34 @@ public class TecocPersistence implements AutoCloseable {
 		);
 	}
 
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		Map<Integer, Integer> postCounts = new HashMap<>();
+		if (userIds.isEmpty()) {
+			return postCounts;
+		}
+		userIds.forEach(userId -> postCounts.put(userId, 0));
+		return useReadOnlyTransaction(c -> {
+			forEachRowWithIds(
+					c, "SELECT id, post_count, deleted_at FROM users WHERE id IN (%s)", postCounts.keySet(),
+					skipDeleted(resultSet -> postCounts.put(resultSet.getInt("id"), resultSet.getInt("post_count")))
+			);
+			return postCounts;
+		});
+	}
+
+	@Override
 	public Optional<Post> readPost(int postId) {
-		return usePreparedStatement(
-				"SELECT * FROM posts WHERE id=?",
+		return useReadPreparedStatement(
+				"SELECT id, user_id, title, body_length, created_at, " +
+						"CASE WHEN body_length <= ? THEN body END AS body " +
+						"FROM posts WHERE id=? AND deleted_at IS NULL",
 				statement -> {
-					statement.setInt(1, postId);
+					statement.setInt(1, inlineBodyLimit);
+					statement.setInt(2, postId);
 					ResultSet resultSet = statement.executeQuery();
 					if (resultSet.next()) {
-						return Optional.of(Post.fromResultSet(resultSet));
+						return Optional.of(Post.fromResultSet(resultSet, this::loadPostBody));
 					} else {
 						return Optional.empty();
 					}
@@ -148,24 +634,243 @@ public class TecocPersistence implements AutoCloseable {
 		);
 	}
 
-	public boolean deletePost(int postId) {
-		return usePreparedStatement(
-				"DELETE FROM posts WHERE id=?",
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		Map<Integer, Post> posts = new HashMap<>();
+		if (postIds.isEmpty()) {
+			return posts;
+		}
+		return useReadOnlyTransaction(c -> {
+			forEachRowWithIds(
+					c,
+					"SELECT id, user_id, title, body_length, created_at, deleted_at, " +
+							"CASE WHEN body_length <= ? THEN body END AS body " +
+							"FROM posts WHERE id IN (%s)",
+					postIds,
+					skipDeleted(resultSet -> {
+						Post post = Post.fromResultSet(resultSet, this::loadPostBody);
+						posts.put(post.getId(), post);
+					}),
+					inlineBodyLimit
+			);
+			return posts;
+		});
+	}
+
+	public Optional<String> readPostBody(int postId) {
+		return streamPostBody(postId, body -> {
+			StringBuilder builder = new StringBuilder();
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = body.read(buffer)) != -1) {
+				builder.append(buffer, 0, read);
+			}
+			return builder.toString();
+		});
+	}
+
+	/**
+	 * The reader is only valid within {@code bodyReader}, since the body is streamed from the database.
+	 */
+	public <T> Optional<T> streamPostBody(int postId, WithBodyReader<T> bodyReader) {
+		return useReadPreparedStatement(
+				"SELECT body FROM posts WHERE id=? AND deleted_at IS NULL",
 				statement -> {
 					statement.setInt(1, postId);
-					int count = statement.executeUpdate();
-					return count > 0;
+					ResultSet resultSet = statement.executeQuery();
+					if (!resultSet.next()) {
+						return Optional.empty();
+					}
+					try (Reader body = resultSet.getCharacterStream("body")) {
+						return Optional.of(bodyReader.read(body));
+					} catch (IOException ioException) {
+						throw new RuntimeException(ioException);
+					}
 				}
 		);
 	}
 
+	private String loadPostBody(int postId) {
+		return readPostBody(postId).orElseThrow(
+				() -> new IllegalStateException(String.format("Post %d has been deleted before its body was loaded", postId))
+		);
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		return useConnection(c -> {
+			try (
+					PreparedStatement decrementPostCount = c.prepareStatement(
+							"UPDATE users SET post_count = post_count - 1 " +
+									"WHERE id = (SELECT user_id FROM posts WHERE id=? AND deleted_at IS NULL)"
+					);
+					PreparedStatement deletePost = c.prepareStatement(
+							softDelete
+									? "UPDATE posts SET deleted_at = CURRENT_TIMESTAMP WHERE id=? AND deleted_at IS NULL"
+									: "DELETE FROM posts WHERE id=?"
+					)
+			) {
+				decrementPostCount.setInt(1, postId);
+				decrementPostCount.executeUpdate();
+				deletePost.setInt(1, postId);
+				int count = deletePost.executeUpdate();
+				if (count > 0) {
+					recordChange(c, Entity.POST, Kind.DELETED, postId);
+				}
+				return count > 0;
+			}
+		});
+	}
+
+	private void recordChange(Connection c, Entity entity, Kind kind, int entityId) throws SQLException {
+		try (PreparedStatement statement = c.prepareStatement(
+				"INSERT INTO change_events(entity, kind, entity_id) VALUES(?, ?, ?)",
+				Statement.RETURN_GENERATED_KEYS
+		)) {
+			statement.setString(1, entity.name());
+			statement.setString(2, kind.name());
+			statement.setInt(3, entityId);
+			statement.executeUpdate();
+			ResultSet generatedKeys = statement.getGeneratedKeys();
+			generatedKeys.next();
+			uncommittedChanges.add(new ChangeEvent(generatedKeys.getLong("id"), entity, kind, entityId));
+		}
+	}
+
+	// The write has been committed already, so a failing listener must not make it fail for the caller
+	private void publishChanges(List<ChangeEvent> committedChanges) {
+		for (ChangeEvent event : committedChanges) {
+			for (ChangeListener listener : changeListeners) {
+				try {
+					listener.onChange(event);
+				} catch (RuntimeException listenerException) {
+					Thread thread = Thread.currentThread();
+					thread.getUncaughtExceptionHandler().uncaughtException(thread, listenerException);
+				}
+			}
+		}
+	}
+
+	// Listeners are called after the connection has been released, so that slow listeners do not hold up other calls
 	private <T> T useConnection(WithConnection<T> sqlCode) {
+		Deadline deadline = startDeadline();
+		List<ChangeEvent> committedChanges = new ArrayList<>();
+		T result;
+		synchronized (this) {
+			try {
+				result = sqlCode.run(deadline == null ? connection : deadline.watch(connection));
+				if (deadline != null) {
+					deadline.check();
+				}
+				connection.commit();
+				committedChanges.addAll(uncommittedChanges);
+			} catch (SQLException sqlException) {
+				rollback(connection, sqlException);
+				throw failure(deadline, sqlException);
+			} finally {
+				uncommittedChanges.clear();
+				if (deadline != null) {
+					deadline.close();
+				}
+			}
+		}
+		publishChanges(committedChanges);
+		return result;
+	}
+
+	// Locks the read connection only, so reads do not queue behind calls on the primary connection
+	private <T> T useReadConnection(WithConnection<T> sqlCode) {
+		if (readConnection == null || readYourWrites) {
+			return useConnection(sqlCode);
+		}
+		Deadline deadline = startDeadline();
+		synchronized (readConnection) {
+			try {
+				T result = sqlCode.run(deadline == null ? readConnection : deadline.watch(readConnection));
+				if (deadline != null) {
+					deadline.check();
+				}
+				readConnection.commit();
+				return result;
+			} catch (SQLException sqlException) {
+				rollback(readConnection, sqlException);
+				throw failure(deadline, sqlException);
+			} finally {
+				if (deadline != null) {
+					deadline.close();
+				}
+			}
+		}
+	}
+
+	// Waiting for the connection counts against the deadline
+	private Deadline startDeadline() {
+		long now = System.nanoTime();
+		Long expiresAt = callDeadline.get();
+		Duration timeout = defaultTimeout;
+		if (timeout != null) {
+			long defaultExpiresAt = now + timeout.toNanos();
+			if (expiresAt == null || defaultExpiresAt - expiresAt < 0) {
+				expiresAt = defaultExpiresAt;
+			}
+		}
+		return expiresAt == null ? null : new Deadline(now, expiresAt);
+	}
+
+	private static RuntimeException failure(Deadline deadline, SQLException sqlException) {
+		if (deadline != null && deadline.isExpired()) {
+			return deadline.exceeded(sqlException);
+		}
+		return new RuntimeException(sqlException);
+	}
+
+	// Takes effect for the next transaction only, which is the one started by sqlCode
+	private <T> T useReadOnlyTransaction(WithConnection<T> sqlCode) {
+		return useReadConnection(c -> {
+			try (Statement statement = c.createStatement()) {
+				statement.execute("SET TRANSACTION READ ONLY");
+			}
+			return sqlCode.run(c);
+		});
+	}
+
+	// Large id sets are split into IN-lists of at most MAX_IN_LIST_SIZE ids, each with its own query
+	private static void forEachRowWithIds(
+			Connection c, String sqlTemplate, Collection<Integer> ids, WithRow rowReader, int... leadingParameters
+	) throws SQLException {
+		List<Integer> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+		for (int from = 0; from < distinctIds.size(); from += MAX_IN_LIST_SIZE) {
+			List<Integer> chunk = distinctIds.subList(from, Math.min(distinctIds.size(), from + MAX_IN_LIST_SIZE));
+			try (PreparedStatement statement = c.prepareStatement(String.format(sqlTemplate, placeholders(chunk.size())))) {
+				int index = 1;
+				for (int parameter : leadingParameters) {
+					statement.setInt(index++, parameter);
+				}
+				for (int id : chunk) {
+					statement.setInt(index++, id);
+				}
+				ResultSet resultSet = statement.executeQuery();
+				while (resultSet.next()) {
+					rowReader.read(resultSet);
+				}
+			}
+		}
+	}
+
+	// With deleted_at IS NULL in the condition HSQLDB scans the deleted_at index instead of looking up the ids
+	private static WithRow skipDeleted(WithRow rowReader) {
+		return resultSet -> {
+			if (resultSet.getTimestamp("deleted_at") == null) {
+				rowReader.read(resultSet);
+			}
+		};
+	}
+
+	private static void rollback(Connection connection, SQLException cause) {
 		try {
-			T result = sqlCode.run(connection);
-			connection.commit();
-			return result;
-		} catch (SQLException sqlException) {
-			throw new RuntimeException(sqlException);
+			connection.rollback();
+		} catch (SQLException rollbackException) {
+			cause.addSuppressed(rollbackException);
 		}
 	}
 
@@ -177,6 +882,22 @@ public class TecocPersistence implements AutoCloseable {
 		});
 	}
 
+	private <T> T useReadStatement(WithStatement<T, Statement> sqlCode) {
+		return useReadConnection(c -> {
+			try (Statement statement = c.createStatement()) {
+				return sqlCode.run(statement);
+			}
+		});
+	}
+
+	private <T> T useReadPreparedStatement(String sql, WithStatement<T, PreparedStatement> sqlCode) {
+		return useReadConnection(c -> {
+			try (PreparedStatement statement = c.prepareStatement(sql)) {
+				return sqlCode.run(statement);
+			}
+		});
+	}
+
 	private <T> T usePreparedStatement(String sql, WithStatement<T, PreparedStatement> sqlCode) {
 		return useConnection(c -> {
 			try (PreparedStatement statement = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
@@ -185,9 +906,13 @@ public class TecocPersistence implements AutoCloseable {
 		});
 	}
 
+	private static String placeholders(int count) {
+		return String.join(", ", Collections.nCopies(count, "?"));
+	}
+
 	private void executeStatements(String... statements) {
 		useConnection(c -> {
-			try (Statement statement = connection.createStatement()) {
+			try (Statement statement = c.createStatement()) {
 				for (String sql : statements) {
 					statement.executeUpdate(sql);
 				}
@@ -0,0 +1,95 @@
+package mbt.tecoc;
+
+import java.time.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Removes rows that {@link TecocPersistence} has soft deleted on a background thread.
+ * Each batch of at most {@code batchSize} rows is its own short transaction and the purger pauses
+ * after every batch, so that request path calls never wait long for the connection.
+ * While there is nothing to purge or purging fails, the pause doubles up to {@code maxPause}
+ * and drops back to {@code pause} after the next batch that purged rows.
+ */
+public class TombstonePurger implements AutoCloseable {
+
+	private final TecocPersistence persistence;
+	private final int batchSize;
+	private final long pauseNanos;
+	private final long maxPauseNanos;
+	private final Thread purger;
+	private final AtomicLong purged = new AtomicLong();
+
+	private volatile boolean stopped = false;
+	private volatile RuntimeException lastFailure = null;
+
+	public TombstonePurger(TecocPersistence persistence, int batchSize, Duration pause, Duration maxPause) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize must be at least 1 but was " + batchSize);
+		}
+		if (maxPause.compareTo(pause) < 0) {
+			throw new IllegalArgumentException(String.format("maxPause %s must not be shorter than pause %s", maxPause, pause));
+		}
+		this.persistence = persistence;
+		this.batchSize = batchSize;
+		this.pauseNanos = pause.toNanos();
+		this.maxPauseNanos = maxPause.toNanos();
+		this.purger = new Thread(this::runPurger, "tecoc-tombstone-purger");
+		this.purger.setDaemon(true);
+		this.purger.start();
+	}
+
+	public TombstonePurger(TecocPersistence persistence, int batchSize, Duration pause) {
+		this(persistence, batchSize, pause, maxOf(pause, Duration.ofSeconds(1)));
+	}
+
+	public TombstonePurger(TecocPersistence persistence) {
+		this(persistence, 100, Duration.ofMillis(10));
+	}
+
+	public long purged() {
+		return purged.get();
+	}
+
+	/**
+	 * A failed batch is retried after a growing pause. The failure is kept until a batch succeeds.
+	 */
+	public RuntimeException lastFailure() {
+		return lastFailure;
+	}
+
+	@Override
+	public void close() {
+		stopped = true;
+		purger.interrupt();
+		try {
+			purger.join();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void runPurger() {
+		long nextPauseNanos = pauseNanos;
+		while (!stopped) {
+			try {
+				int purgedRows = persistence.purgeDeleted(batchSize);
+				purged.addAndGet(purgedRows);
+				lastFailure = null;
+				nextPauseNanos = purgedRows > 0 ? pauseNanos : backOff(nextPauseNanos);
+			} catch (RuntimeException purgeException) {
+				lastFailure = purgeException;
+				nextPauseNanos = backOff(nextPauseNanos);
+			}
+			LockSupport.parkNanos(nextPauseNanos);
+		}
+	}
+
+	private long backOff(long currentPauseNanos) {
+		return Math.min(maxPauseNanos, Math.max(1, currentPauseNanos) * 2);
+	}
+
+	private static Duration maxOf(Duration first, Duration second) {
+		return first.compareTo(second) >= 0 ? first : second;
+	}
+}
@@ -26,7 +26,7 @@ public class User {
 		this(0, name, email, null);
 	}
 
-	private User(int id, String name, String email, Instant createdAt) {
+	User(int id, String name, String email, Instant createdAt) {
 		this.id = id;
 		this.name = name;
 		this.email = email;
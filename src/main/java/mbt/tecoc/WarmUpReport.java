@@ -0,0 +1,82 @@
+package mbt.tecoc;
+
+import java.time.*;
+import java.util.*;
+
+/**
+ * Latencies measured during {@link TecocPersistence#warmUp(int)}, per operation in the order of first use.
+ * The first call includes class loading and statement compilation, the steady state is the median
+ * of the last quarter of the rounds.
+ */
+public class WarmUpReport {
+
+	private final int rounds;
+	private final Duration total;
+	private final Map<String, long[]> nanosByOperation;
+
+	WarmUpReport(int rounds, Duration total, Map<String, long[]> nanosByOperation) {
+		this.rounds = rounds;
+		this.total = total;
+		this.nanosByOperation = new LinkedHashMap<>(nanosByOperation);
+	}
+
+	public int rounds() {
+		return rounds;
+	}
+
+	public Duration total() {
+		return total;
+	}
+
+	public Set<String> operations() {
+		return Collections.unmodifiableSet(nanosByOperation.keySet());
+	}
+
+	public Duration firstCall(String operation) {
+		return Duration.ofNanos(nanos(operation)[0]);
+	}
+
+	public Duration steadyState(String operation) {
+		long[] nanos = nanos(operation);
+		long[] lastQuarter = Arrays.copyOfRange(nanos, nanos.length - Math.max(1, nanos.length / 4), nanos.length);
+		Arrays.sort(lastQuarter);
+		return Duration.ofNanos(lastQuarter[lastQuarter.length / 2]);
+	}
+
+	/**
+	 * The first round from which on the operation stays within {@code factor} times its steady state latency,
+	 * counted from 1.
+	 */
+	public int roundsToSteadyState(String operation, double factor) {
+		long[] nanos = nanos(operation);
+		long limit = (long) (steadyState(operation).toNanos() * factor);
+		int round = nanos.length;
+		while (round > 0 && nanos[round - 1] <= limit) {
+			round--;
+		}
+		return Math.min(round + 1, nanos.length);
+	}
+
+	private long[] nanos(String operation) {
+		long[] nanos = nanosByOperation.get(operation);
+		if (nanos == null) {
+			throw new IllegalArgumentException(String.format("No latencies for operation %s", operation));
+		}
+		return nanos;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder(String.format("Warm-up of %d rounds in %d ms", rounds, total.toMillis()));
+		for (String operation : nanosByOperation.keySet()) {
+			report.append(String.format(
+					"%n%-18s first %8d us, steady %6d us after %5d rounds",
+					operation,
+					firstCall(operation).toNanos() / 1000,
+					steadyState(operation).toNanos() / 1000,
+					roundsToSteadyState(operation, 2.0)
+			));
+		}
+		return report.toString();
+	}
+}
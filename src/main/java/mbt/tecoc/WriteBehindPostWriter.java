@@ -0,0 +1,199 @@
+package mbt.tecoc;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.*;
+
+/**
+ * Opt-in write-behind mode for post creation: {@link #createPost(Post)} only enqueues the post
+ * and a background thread writes queued posts in batches, one transaction per batch.
+ * A batch is written as soon as it reaches {@code batchSize} posts or {@code maxDelay} after its first post.
+ * When the buffer is full {@link #createPost(Post)} blocks until the flusher catches up.
+ * If a batch cannot be written, its posts are written one by one, so that only the bad posts fail.
+ */
+public class WriteBehindPostWriter implements AutoCloseable {
+
+	private static class PendingPost {
+		private final Post post;
+		private final CompletableFuture<Integer> id = new CompletableFuture<>();
+
+		private PendingPost(Post post) {
+			this.post = post;
+		}
+
+		private boolean isFlushRequest() {
+			return post == null;
+		}
+	}
+
+	private final Persistence persistence;
+	private final BlockingQueue<PendingPost> buffer;
+	private final int batchSize;
+	private final long maxDelayNanos;
+	private final Thread flusher;
+
+	// Enqueuing holds the read lock, so close() cannot mark the writer closed while a post is on its way into the buffer
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private boolean closed = false;
+	private volatile boolean stopped = false;
+
+	public WriteBehindPostWriter(Persistence persistence, int capacity, int batchSize, Duration maxDelay) {
+		if (batchSize < 1 || capacity < batchSize) {
+			throw new IllegalArgumentException(
+					String.format("Need 1 <= batchSize <= capacity but batchSize=%d, capacity=%d", batchSize, capacity)
+			);
+		}
+		this.persistence = persistence;
+		this.buffer = new ArrayBlockingQueue<>(capacity);
+		this.batchSize = batchSize;
+		this.maxDelayNanos = maxDelay.toNanos();
+		this.flusher = new Thread(this::runFlusher, "tecoc-write-behind");
+		this.flusher.setDaemon(true);
+		this.flusher.start();
+	}
+
+	public WriteBehindPostWriter(Persistence persistence) {
+		this(persistence, 10_000, 500, Duration.ofMillis(50));
+	}
+
+	public CompletableFuture<Integer> createPost(Post newPost) {
+		if (newPost == null) {
+			throw new IllegalArgumentException("newPost must not be null");
+		}
+		return enqueueUnlessClosed(new PendingPost(newPost)).id;
+	}
+
+	/**
+	 * Blocks until all posts enqueued before this call have been written and committed.
+	 */
+	public void flush() {
+		awaitFlush(enqueueUnlessClosed(new PendingPost(null)));
+	}
+
+	private static void awaitFlush(PendingPost flushRequest) {
+		try {
+			flushRequest.id.get();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		} catch (ExecutionException executionException) {
+			throw new RuntimeException(executionException.getCause());
+		}
+	}
+
+	/**
+	 * Writes all pending posts and stops the flusher. The underlying persistence is not closed.
+	 */
+	@Override
+	public synchronized void close() {
+		closeLock.writeLock().lock();
+		try {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+		awaitFlush(enqueue(new PendingPost(null)));
+		stopped = true;
+		flusher.interrupt();
+		try {
+			flusher.join();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+		IllegalStateException closedException = new IllegalStateException("WriteBehindPostWriter has been closed");
+		List<PendingPost> lateArrivals = new ArrayList<>();
+		buffer.drainTo(lateArrivals);
+		lateArrivals.forEach(pendingPost -> pendingPost.id.completeExceptionally(closedException));
+	}
+
+	private PendingPost enqueueUnlessClosed(PendingPost pendingPost) {
+		closeLock.readLock().lock();
+		try {
+			if (closed) {
+				throw new IllegalStateException("WriteBehindPostWriter has already been closed");
+			}
+			return enqueue(pendingPost);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	private PendingPost enqueue(PendingPost pendingPost) {
+		try {
+			buffer.put(pendingPost);
+			return pendingPost;
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		}
+	}
+
+	private void runFlusher() {
+		List<PendingPost> batch = new ArrayList<>(batchSize);
+		while (!stopped) {
+			try {
+				collectBatch(batch);
+			} catch (InterruptedException interruptedException) {
+				// close() interrupts only after a flush, so nothing is left in the buffer
+			}
+			writeBatch(batch);
+		}
+	}
+
+	private void collectBatch(List<PendingPost> batch) throws InterruptedException {
+		PendingPost first = buffer.take();
+		if (first.isFlushRequest()) {
+			first.id.complete(0);
+			return;
+		}
+		batch.add(first);
+		long deadline = System.nanoTime() + maxDelayNanos;
+		while (batch.size() < batchSize) {
+			long remaining = deadline - System.nanoTime();
+			PendingPost next = remaining > 0 ? buffer.poll(remaining, TimeUnit.NANOSECONDS) : null;
+			if (next == null) {
+				return;
+			}
+			if (next.isFlushRequest()) {
+				writeBatch(batch);
+				next.id.complete(0);
+				return;
+			}
+			batch.add(next);
+		}
+	}
+
+	private void writeBatch(List<PendingPost> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		List<Post> posts = new ArrayList<>(batch.size());
+		batch.forEach(pendingPost -> posts.add(pendingPost.post));
+		try {
+			List<Integer> newIds = persistence.createPosts(posts);
+			for (int i = 0; i < batch.size(); i++) {
+				batch.get(i).id.complete(newIds.get(i));
+			}
+		} catch (RuntimeException writeException) {
+			if (batch.size() == 1) {
+				batch.get(0).id.completeExceptionally(writeException);
+			} else {
+				batch.forEach(this::writeSingle);
+			}
+		} finally {
+			batch.clear();
+		}
+	}
+
+	private void writeSingle(PendingPost pendingPost) {
+		try {
+			pendingPost.id.complete(persistence.createPost(pendingPost.post));
+		} catch (RuntimeException writeException) {
+			pendingPost.id.completeExceptionally(writeException);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package mbt.counter;
+
+import java.util.concurrent.*;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.*;
+import org.openjdk.jmh.runner.options.*;
+
+/**
+ * Not part of the test run. Start {@link #main(String[])} to measure contention from 2 up to 64 threads,
+ * half of them counting up and half counting down.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentCounterBenchmark {
+
+	private final ConcurrentCounter concurrentCounter = new ConcurrentCounter();
+	private final Counter synchronizedCounter = new Counter();
+
+	@Benchmark
+	@Group("concurrent")
+	@GroupThreads(1)
+	public int concurrentCountUp() {
+		concurrentCounter.countUp();
+		return concurrentCounter.value();
+	}
+
+	@Benchmark
+	@Group("concurrent")
+	@GroupThreads(1)
+	public int concurrentCountDown() {
+		concurrentCounter.countDown();
+		return concurrentCounter.value();
+	}
+
+	@Benchmark
+	@Group("synchronized")
+	@GroupThreads(1)
+	public int synchronizedCountUp() {
+		synchronized (synchronizedCounter) {
+			synchronizedCounter.countUp();
+			return synchronizedCounter.value();
+		}
+	}
+
+	@Benchmark
+	@Group("synchronized")
+	@GroupThreads(1)
+	public int synchronizedCountDown() {
+		synchronized (synchronizedCounter) {
+			synchronizedCounter.countDown();
+			return synchronizedCounter.value();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		// Threads are the total over all groups, JMH rounds them up to whole groups of two
+		for (int threads : new int[]{2, 4, 8, 16, 32, 64}) {
+			Options options = new OptionsBuilder()
+									  .include(ConcurrentCounterBenchmark.class.getSimpleName())
+									  .threads(threads)
+									  .build();
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package mbt.counter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.constraints.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConcurrentCounterProperties {
+
+	// A failure depends on the thread interleaving and rarely reproduces while shrinking
+	@Property(tries = 200, shrinking = ShrinkingMode.OFF)
+	void boundsHoldUnderParallelCounting(
+			@ForAll @IntRange(min = 1, max = 10_000) int max,
+			@ForAll @IntRange(max = 10_000) int startValue,
+			@ForAll("actionsPerThread") List<ActionSequence<BoundedCounter>> actionsPerThread
+	) throws Exception {
+		ConcurrentCounter counter = new ConcurrentCounter(max);
+		counter.countUpBy(startValue);
+		int initialValue = counter.value();
+
+		Queue<Integer> outOfBounds = new ConcurrentLinkedQueue<>();
+		AtomicLong stepsUp = new AtomicLong();
+		AtomicLong stepsDown = new AtomicLong();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(actionsPerThread.size());
+		try {
+			List<Future<?>> threads = new ArrayList<>();
+			for (ActionSequence<BoundedCounter> actions : actionsPerThread) {
+				threads.add(executor.submit(() -> {
+					SharedCounter threadCounter = new SharedCounter(counter, stepsUp, stepsDown);
+					start.await();
+					actions.peek(ignore -> {
+						int value = counter.value();
+						if (value < 0 || value > max) {
+							outOfBounds.add(value);
+						}
+					}).run(threadCounter);
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> thread : threads) {
+				thread.get();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		assertThat(outOfBounds).isEmpty();
+		assertThat(counter.value()).isBetween(0, max);
+
+		if (stepsDown.get() == 0) {
+			assertThat(counter.value()).isEqualTo((int) Math.min(max, initialValue + stepsUp.get()));
+		}
+		if (stepsUp.get() == 0) {
+			assertThat(counter.value()).isEqualTo((int) Math.max(0, initialValue - stepsDown.get()));
+		}
+	}
+
+	/**
+	 * Besides mixed workloads also threads that only count up or only count down,
+	 * for which the final value must match the sequential counter exactly.
+	 */
+	@Provide
+	Arbitrary<List<ActionSequence<BoundedCounter>>> actionsPerThread() {
+		Arbitrary<Action<BoundedCounter>> countUpActions = Arbitraries.oneOf(
+				Arbitraries.constant(new CountUpAction()),
+				Arbitraries.constant(new CountUpAtMaxAction()),
+				Arbitraries.integers().between(1, 99).map(RaiseValueAction::new)
+		);
+		Arbitrary<Action<BoundedCounter>> countDownActions = Arbitraries.oneOf(
+				Arbitraries.constant(new CountDownAction()),
+				Arbitraries.constant(new CountDownAtZeroAction()),
+				Arbitraries.integers().between(1, 99).map(LowerValueAction::new)
+		);
+		return Arbitraries.oneOf(
+				threads(CounterProperties.counterAction()),
+				threads(countUpActions),
+				threads(countDownActions)
+		);
+	}
+
+	private Arbitrary<List<ActionSequence<BoundedCounter>>> threads(Arbitrary<Action<BoundedCounter>> actions) {
+		return Arbitraries.sequences(actions).ofMaxSize(300).list().ofMinSize(2).ofMaxSize(8);
+	}
+
+	/**
+	 * One thread's view of the shared counter: the counter actions check their postconditions against
+	 * a thread-local sequential {@link Counter} while every count is also applied to the shared counter.
+	 */
+	private static class SharedCounter implements BoundedCounter {
+
+		private final BoundedCounter shared;
+		private final Counter model;
+		private final AtomicLong stepsUp;
+		private final AtomicLong stepsDown;
+
+		private SharedCounter(BoundedCounter shared, AtomicLong stepsUp, AtomicLong stepsDown) {
+			this.shared = shared;
+			this.model = new Counter(shared.max());
+			this.model.countUpBy(shared.value());
+			this.stepsUp = stepsUp;
+			this.stepsDown = stepsDown;
+		}
+
+		@Override
+		public void countUp() {
+			countUpBy(1);
+		}
+
+		@Override
+		public void countDown() {
+			countDownBy(1);
+		}
+
+		@Override
+		public void countUpBy(int steps) {
+			model.countUpBy(steps);
+			shared.countUpBy(steps);
+			stepsUp.addAndGet(steps);
+		}
+
+		@Override
+		public void countDownBy(int steps) {
+			model.countDownBy(steps);
+			shared.countDownBy(steps);
+			stepsDown.addAndGet(steps);
+		}
+
+		@Override
+		public int value() {
+			return model.value();
+		}
+
+		@Override
+		public int max() {
+			return model.max();
+		}
+
+		@Override
+		public String toString() {
+			return String.format("SharedCounter[%d]", model.value());
+		}
+	}
+}
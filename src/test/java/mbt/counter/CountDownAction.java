@@ -4,15 +4,15 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class CountDownAction implements Action<Counter> {
+class CountDownAction implements Action<BoundedCounter> {
 
 	@Override
-	public boolean precondition(Counter counter) {
+	public boolean precondition(BoundedCounter counter) {
 		return counter.value() > 0;
 	}
 
 	@Override
-	public Counter run(Counter counter) {
+	public BoundedCounter run(BoundedCounter counter) {
 		int previousValue = counter.value();
 		counter.countDown();
 		assertThat(counter.value()).isEqualTo(previousValue - 1);
@@ -4,15 +4,15 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class CountDownAtZeroAction implements Action<Counter> {
+class CountDownAtZeroAction implements Action<BoundedCounter> {
 
 	@Override
-	public boolean precondition(Counter counter) {
+	public boolean precondition(BoundedCounter counter) {
 		return counter.value() == 0;
 	}
 
 	@Override
-	public Counter run(Counter counter) {
+	public BoundedCounter run(BoundedCounter counter) {
 		counter.countDown();
 		assertThat(counter.value()).isEqualTo(0);
 		return counter;
@@ -4,15 +4,15 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class CountUpAction implements Action<Counter> {
+class CountUpAction implements Action<BoundedCounter> {
 
 	@Override
-	public boolean precondition(Counter counter) {
-		return counter.value() < 100;
+	public boolean precondition(BoundedCounter counter) {
+		return counter.value() < counter.max();
 	}
 
 	@Override
-	public Counter run(Counter counter) {
+	public BoundedCounter run(BoundedCounter counter) {
 		int previousValue = counter.value();
 		counter.countUp();
 		assertThat(counter.value()).isEqualTo(previousValue + 1);
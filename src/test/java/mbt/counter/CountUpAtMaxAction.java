@@ -4,17 +4,17 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class CountUpAtMaxAction implements Action<Counter> {
+class CountUpAtMaxAction implements Action<BoundedCounter> {
 
 	@Override
-	public boolean precondition(Counter counter) {
-		return counter.value() == 100;
+	public boolean precondition(BoundedCounter counter) {
+		return counter.value() == counter.max();
 	}
 
 	@Override
-	public Counter run(Counter counter) {
+	public BoundedCounter run(BoundedCounter counter) {
 		counter.countUp();
-		assertThat(counter.value()).isEqualTo(100);
+		assertThat(counter.value()).isEqualTo(counter.max());
 		return counter;
 	}
 
@@ -0,0 +1,40 @@
+package mbt.counter;
+
+import java.util.*;
+
+import mbt.stateful.*;
+import net.jqwik.api.stateful.*;
+
+class CounterActionCodec implements FailureCorpus.Codec<BoundedCounter> {
+
+	@Override
+	public List<String> encode(Action<BoundedCounter> action) {
+		if (action instanceof RaiseValueAction) {
+			return Arrays.asList("raise-by", String.valueOf(((RaiseValueAction) action).raiseBy()));
+		}
+		if (action instanceof LowerValueAction) {
+			return Arrays.asList("lower-by", String.valueOf(((LowerValueAction) action).lowerBy()));
+		}
+		return Collections.singletonList(action.toString());
+	}
+
+	@Override
+	public Action<BoundedCounter> decode(List<String> fields) {
+		switch (fields.get(0)) {
+			case "count up":
+				return new CountUpAction();
+			case "count up at max":
+				return new CountUpAtMaxAction();
+			case "count down":
+				return new CountDownAction();
+			case "count down at zero":
+				return new CountDownAtZeroAction();
+			case "raise-by":
+				return new RaiseValueAction(Integer.parseInt(fields.get(1)));
+			case "lower-by":
+				return new LowerValueAction(Integer.parseInt(fields.get(1)));
+			default:
+				throw new IllegalArgumentException("Unknown counter action: " + fields);
+		}
+	}
+}
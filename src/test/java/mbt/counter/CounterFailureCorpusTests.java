@@ -0,0 +1,50 @@
+package mbt.counter;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+
+import mbt.stateful.*;
+import net.jqwik.api.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CounterFailureCorpusTests {
+
+	@Example
+	void storedSequencesAreReplayedWithoutGeneration() throws IOException {
+		FailureCorpus<BoundedCounter> corpus = corpusWith("count up\nraise-by\t98\ncount up at max\n\ncount down at zero\n\n");
+
+		List<List<Action<BoundedCounter>>> sequences = corpus.load();
+		assertThat(sequences).hasSize(2);
+		assertThat(sequences.get(0)).extracting(Object::toString)
+									.containsExactly("count up", "raise by 98", "count up at max");
+
+		corpus.replay(Counter::new);
+	}
+
+	@Example
+	void failingReplayReportsTheSequence() throws IOException {
+		FailureCorpus<BoundedCounter> corpus = corpusWith("count up\nraise-by\t5\n\n");
+		Counter brokenCounter = new Counter() {
+			@Override
+			public void countUpBy(int steps) {
+				super.countUpBy(steps - 1);
+			}
+		};
+
+		assertThatThrownBy(() -> corpus.replay(() -> brokenCounter))
+				.isInstanceOf(AssertionError.class)
+				.hasMessageContaining("Sequence 1")
+				.hasMessageContaining("raise by 5");
+	}
+
+	private static FailureCorpus<BoundedCounter> corpusWith(String content) throws IOException {
+		Path file = Files.createTempFile("corpus", ".txt");
+		file.toFile().deleteOnExit();
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return new FailureCorpus<>(file, new CounterActionCodec());
+	}
+}
@@ -1,20 +1,47 @@
 package mbt.counter;
 
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+import mbt.stateful.*;
 import net.jqwik.api.*;
+import net.jqwik.api.constraints.*;
+import net.jqwik.api.lifecycle.*;
 import net.jqwik.api.stateful.*;
 import net.jqwik.api.statistics.Statistics;
 
 class CounterProperties {
 
+	private final StateCoverage<BoundedCounter> coverage = new StateCoverage<>(
+			counter -> counter.value() == 0 ? "0"
+							   : counter.value() == counter.max() ? "max"
+										 : "<= " + ((counter.value() + 9) / 10) * 10
+	);
+
+	private final FailureCorpus<BoundedCounter> corpus = new FailureCorpus<>(
+			Paths.get("src/test/resources/corpus/checkCounter.txt"), new CounterActionCodec()
+	);
+
+	@AfterProperty
+	void saveFailureCorpus() throws IOException {
+		corpus.saveLastFailure();
+	}
+
+	@Example
+	void replayFailureCorpus() throws IOException {
+		corpus.replay(Counter::new);
+	}
+
 	@Property
-	void checkCounter(@ForAll("counterActions") ActionSequence<Counter> actions) {
-		actions.peek(counter -> {
+	void checkCounter(@ForAll("counterActions") ActionSequence<BoundedCounter> actions) {
+		corpus.run(actions.peek(counter -> {
 			String classifier =
 					counter.value() == 0 ? "at zero"
-							: counter.value() == 100 ? "at max"
+							: counter.value() == counter.max() ? "at max"
 									  : "in between";
 			Statistics.collect(classifier);
-		}).run(new Counter());
+		}), new Counter());
 
 		Statistics.coverage(checker -> {
 			checker.check("at zero").count(c -> c > 1);
@@ -23,26 +50,84 @@ class CounterProperties {
 		});
 	}
 
+	@Property(tries = 100)
+	void checkCounterWithCoverageGuidance(@ForAll("guidedCounterActions") ActionSequence<BoundedCounter> actions) {
+		actions.peek(counter -> Statistics.collect(coverage.classify(counter))).run(new Counter());
+
+		Statistics.coverage(checker -> {
+			checker.check("0").count(c -> c > 1);
+			checker.check("max").count(c -> c > 1);
+			for (int bucket = 10; bucket <= 100; bucket += 10) {
+				checker.check("<= " + bucket).count(c -> c > 1);
+			}
+		});
+	}
+
+	@Property(tries = 1_000_000)
+	@TimeBudget
+	void checkCounterWithinTimeBudget(@ForAll("timeBudgetedCounterActions") ActionSequence<BoundedCounter> actions) {
+		actions.run(new Counter());
+	}
+
+	@Property
+	void checkConcurrentCounter(@ForAll("counterActions") ActionSequence<BoundedCounter> actions) {
+		actions.run(new ConcurrentCounter());
+	}
+
+	@Property
+	void checkCounterWithConfiguredMax(
+			@ForAll @IntRange(min = 1, max = 1000) int max,
+			@ForAll("counterActions") ActionSequence<BoundedCounter> actions
+	) {
+		actions.run(new Counter(max));
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<BoundedCounter>> guidedCounterActions() {
+		return CoverageGuidedActions.sequences(coverage, Arrays.asList(
+				Arbitraries.constant(new CountUpAction()),
+				Arbitraries.constant(new CountUpAtMaxAction()),
+				Arbitraries.constant(new CountDownAction()),
+				Arbitraries.constant(new CountDownAtZeroAction()),
+				Arbitraries.integers().between(1, 99).shrinkTowards(99).map(RaiseValueAction::new),
+				Arbitraries.integers().between(1, 99).shrinkTowards(99).map(LowerValueAction::new)
+		)).ofMaxSize(32);
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<BoundedCounter>> counterActions() {
+		return Arbitraries.sequences(counterAction());
+	}
+
 	@Provide
-	Arbitrary<ActionSequence<Counter>> counterActions() {
-		Arbitrary<Action<Counter>> standardActions = Arbitraries.of(
+	Arbitrary<ActionSequence<BoundedCounter>> timeBudgetedCounterActions() {
+		return TimeBudgetRun.sequences(counterAction());
+	}
+
+	static Arbitrary<Action<BoundedCounter>> counterAction() {
+		Arbitrary<Action<BoundedCounter>> standardActions = Arbitraries.of(
 				new CountUpAction(),
 				new CountUpAtMaxAction(),
 				new CountDownAction(),
 				new CountDownAtZeroAction()
 		);
-		Arbitrary<Action<Counter>> raiseAction =
+		Arbitrary<Action<BoundedCounter>> raiseAction =
 				Arbitraries
 						.integers()
 						.between(1, 99)
 						.shrinkTowards(99)
 						.map(RaiseValueAction::new);
+		Arbitrary<Action<BoundedCounter>> lowerAction =
+				Arbitraries
+						.integers()
+						.between(1, 99)
+						.shrinkTowards(99)
+						.map(LowerValueAction::new);
 
-		return Arbitraries.sequences(
-				Arbitraries.frequencyOf(
-						Tuple.of(5, standardActions),
-						Tuple.of(1, raiseAction)
-				)
+		return Arbitraries.frequencyOf(
+				Tuple.of(5, standardActions),
+				Tuple.of(1, raiseAction),
+				Tuple.of(1, lowerAction)
 		);
 	}
 
@@ -0,0 +1,36 @@
+package mbt.counter;
+
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LowerValueAction implements Action<BoundedCounter> {
+
+	private int lowerBy;
+
+	public LowerValueAction(int lowerBy) {
+		this.lowerBy = lowerBy;
+	}
+
+	int lowerBy() {
+		return lowerBy;
+	}
+
+	@Override
+	public boolean precondition(BoundedCounter counter) {
+		return counter.value() - lowerBy > 0;
+	}
+
+	@Override
+	public BoundedCounter run(BoundedCounter counter) {
+		int previousValue = counter.value();
+		counter.countDownBy(lowerBy);
+		assertThat(counter.value()).isEqualTo(previousValue - lowerBy);
+		return counter;
+	}
+
+	@Override
+	public String toString() {
+		return "lower by " + lowerBy;
+	}
+}
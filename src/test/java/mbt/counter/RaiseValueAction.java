@@ -4,7 +4,7 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class RaiseValueAction implements Action<Counter> {
+class RaiseValueAction implements Action<BoundedCounter> {
 
 	private int raiseBy;
 
@@ -12,17 +12,19 @@ class RaiseValueAction implements Action<Counter> {
 		this.raiseBy = raiseBy;
 	}
 
+	int raiseBy() {
+		return raiseBy;
+	}
+
 	@Override
-	public boolean precondition(Counter counter) {
-		return counter.value() + raiseBy < 100;
+	public boolean precondition(BoundedCounter counter) {
+		return counter.value() + raiseBy < counter.max();
 	}
 
 	@Override
-	public Counter run(Counter counter) {
+	public BoundedCounter run(BoundedCounter counter) {
 		int previousValue = counter.value();
-		for (int i = 0; i < raiseBy; i++) {
-			counter.countUp();
-		}
+		counter.countUpBy(raiseBy);
 		assertThat(counter.value()).isEqualTo(previousValue + raiseBy);
 		return counter;
 	}
@@ -0,0 +1,39 @@
+package mbt.counter.model;
+
+import java.util.*;
+
+import mbt.counter.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CountSlotUpAction implements Action<Tuple2<CounterRegistry, Map<Integer, CounterModel>>> {
+
+	private final int key;
+	private final int steps;
+
+	CountSlotUpAction(int key, int steps) {
+		this.key = key;
+		this.steps = steps;
+	}
+
+	@Override
+	public Tuple2<CounterRegistry, Map<Integer, CounterModel>> run(Tuple2<CounterRegistry, Map<Integer, CounterModel>> tuple) {
+		CounterRegistry registry = tuple.get1();
+		CounterModel slotModel = tuple.get2().computeIfAbsent(key, ignore -> new CounterModel(registry.max()));
+		if (steps == 1) {
+			registry.countUp(key);
+		} else {
+			registry.countUpBy(key, steps);
+		}
+		slotModel.upBy(steps);
+		assertThat(registry.value(key)).isEqualTo(slotModel.getValue());
+		return tuple;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("count slot %d up by %d", key, steps);
+	}
+}
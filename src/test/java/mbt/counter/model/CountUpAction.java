@@ -6,10 +6,10 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class CountUpAction implements Action<Tuple2<Counter, CounterModel>> {
+class CountUpAction implements Action<Tuple2<BoundedCounter, CounterModel>> {
 	@Override
-	public Tuple2<Counter, CounterModel> run(Tuple2<Counter, CounterModel> tuple) {
-		Counter counter = tuple.get1();
+	public Tuple2<BoundedCounter, CounterModel> run(Tuple2<BoundedCounter, CounterModel> tuple) {
+		BoundedCounter counter = tuple.get1();
 		CounterModel counterModel = tuple.get2();
 		counter.countUp();
 		counterModel.up();
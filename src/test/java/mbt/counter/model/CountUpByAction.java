@@ -0,0 +1,31 @@
+package mbt.counter.model;
+
+import mbt.counter.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CountUpByAction implements Action<Tuple2<BoundedCounter, CounterModel>> {
+
+	private final int steps;
+
+	CountUpByAction(int steps) {
+		this.steps = steps;
+	}
+
+	@Override
+	public Tuple2<BoundedCounter, CounterModel> run(Tuple2<BoundedCounter, CounterModel> tuple) {
+		BoundedCounter counter = tuple.get1();
+		CounterModel counterModel = tuple.get2();
+		counter.countUpBy(steps);
+		counterModel.upBy(steps);
+		assertThat(counter.value()).isEqualTo(counterModel.getValue());
+		return tuple;
+	}
+
+	@Override
+	public String toString() {
+		return "count up by " + steps;
+	}
+}
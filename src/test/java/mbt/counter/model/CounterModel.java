@@ -2,10 +2,19 @@ package mbt.counter.model;
 
 public class CounterModel {
 
+	private final int max;
 	private int value = 0;
 
+	public CounterModel() {
+		this(100);
+	}
+
+	public CounterModel(int max) {
+		this.max = max;
+	}
+
 	void up() {
-		if (value == 100) {
+		if (value == max) {
 			return;
 		}
 		value++;
@@ -18,8 +27,20 @@ public class CounterModel {
 		value--;
 	}
 
+	void upBy(int steps) {
+		value = Math.min(max, value + steps);
+	}
+
+	void downBy(int steps) {
+		value = Math.max(0, value - steps);
+	}
+
 	int getValue() {
 		return value;
 	}
 
+	int getMax() {
+		return max;
+	}
+
 }
@@ -2,6 +2,7 @@ package mbt.counter.model;
 
 import mbt.counter.*;
 import net.jqwik.api.*;
+import net.jqwik.api.constraints.*;
 import net.jqwik.api.Tuple.*;
 import net.jqwik.api.stateful.*;
 import net.jqwik.api.statistics.Statistics;
@@ -9,27 +10,46 @@ import net.jqwik.api.statistics.Statistics;
 class CounterProperties {
 
 	@Property
-	void checkCounter(@ForAll("counterActions") ActionSequence<Tuple2<Counter, CounterModel>> actions) {
+	void checkCounter(@ForAll("counterActions") ActionSequence<Tuple2<BoundedCounter, CounterModel>> actions) {
 		actions.run(Tuple.of(new Counter(), new CounterModel()));
 	}
 
+	@Property
+	void checkCounterWithConfiguredMax(
+			@ForAll @IntRange(max = 1000) int max,
+			@ForAll("counterActions") ActionSequence<Tuple2<BoundedCounter, CounterModel>> actions
+	) {
+		actions.run(Tuple.of(new Counter(max), new CounterModel(max)));
+	}
+
+	@Property
+	void checkConcurrentCounter(@ForAll("counterActions") ActionSequence<Tuple2<BoundedCounter, CounterModel>> actions) {
+		actions.run(Tuple.of(new ConcurrentCounter(), new CounterModel()));
+	}
+
 	@Provide
-	Arbitrary<ActionSequence<Tuple2<Counter, CounterModel>>> counterActions() {
-		Arbitrary<Action<Tuple2<Counter, CounterModel>>> standardActions = Arbitraries.of(
+	Arbitrary<ActionSequence<Tuple2<BoundedCounter, CounterModel>>> counterActions() {
+		Arbitrary<Action<Tuple2<BoundedCounter, CounterModel>>> standardActions = Arbitraries.of(
 				new CountUpAction(),
 				new CountDownAction()
 		);
-		Arbitrary<Action<Tuple2<Counter, CounterModel>>> raiseAction =
+		Arbitrary<Action<Tuple2<BoundedCounter, CounterModel>>> raiseAction =
 				Arbitraries
 						.integers()
 						.between(1, 99)
 						.shrinkTowards(99)
 						.map(RaiseValueAction::new);
+		Arbitrary<Integer> steps = Arbitraries.integers().between(0, 1000);
+		Arbitrary<Action<Tuple2<BoundedCounter, CounterModel>>> bulkActions = Arbitraries.oneOf(
+				steps.map(CountUpByAction::new),
+				steps.map(CountDownByAction::new)
+		);
 
 		return Arbitraries.sequences(
 				Arbitraries.frequencyOf(
 						Tuple.of(5, standardActions),
-						Tuple.of(1, raiseAction)
+						Tuple.of(1, raiseAction),
+						Tuple.of(1, bulkActions)
 				)
 		);
 	}
@@ -0,0 +1,62 @@
+package mbt.counter.model;
+
+import java.util.*;
+
+import mbt.counter.*;
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class CounterRegistryProperties {
+
+	// Spans three pages of 4096 slots with the last one only partially used
+	final static int capacity = 10_000;
+
+	@Property
+	void checkRegistry(@ForAll("registryActions") ActionSequence<Tuple2<CounterRegistry, Map<Integer, CounterModel>>> actions) {
+		Tuple2<CounterRegistry, Map<Integer, CounterModel>> finalState =
+				actions.run(Tuple.of(new CounterRegistry(capacity), new HashMap<>()));
+
+		CounterRegistry registry = finalState.get1();
+		Map<Integer, CounterModel> slotModels = finalState.get2();
+
+		int[] snapshot = registry.snapshot();
+		assertThat(snapshot).hasSize(capacity);
+		for (int key = 0; key < capacity; key++) {
+			CounterModel slotModel = slotModels.get(key);
+			int expected = slotModel == null ? 0 : slotModel.getValue();
+			assertThat(snapshot[key]).describedAs("slot %d", key).isEqualTo(expected);
+		}
+
+		Map<Integer, Integer> nonZeroSlots = new LinkedHashMap<>();
+		registry.forEachNonZero(nonZeroSlots::put);
+		slotModels.forEach((key, slotModel) -> {
+			if (slotModel.getValue() > 0) {
+				assertThat(nonZeroSlots).containsEntry(key, slotModel.getValue());
+			}
+		});
+		assertThat(nonZeroSlots.values()).allMatch(value -> value > 0);
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<CounterRegistry, Map<Integer, CounterModel>>>> registryActions() {
+		Arbitrary<Integer> keys = Arbitraries.frequencyOf(
+				Tuple.of(3, Arbitraries.of(0, 1, 4095, 4096, 8191, 8192, capacity - 1)),
+				Tuple.of(1, Arbitraries.integers().between(0, capacity - 1))
+		);
+		Arbitrary<Integer> steps = Arbitraries.frequencyOf(
+				Tuple.of(3, Arbitraries.constant(1)),
+				Tuple.of(1, Arbitraries.integers().between(0, 150))
+		);
+
+		return Arbitraries.sequences(
+				Arbitraries.oneOf(
+						Combinators.combine(keys, steps).as(CountSlotUpAction::new),
+						Combinators.combine(keys, steps).as(CountSlotDownAction::new)
+				)
+		);
+	}
+
+}
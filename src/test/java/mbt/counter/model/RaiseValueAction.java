@@ -6,7 +6,7 @@ import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-class RaiseValueAction implements Action<Tuple.Tuple2<Counter, CounterModel>> {
+class RaiseValueAction implements Action<Tuple.Tuple2<BoundedCounter, CounterModel>> {
 
 	private int raiseBy;
 
@@ -15,19 +15,17 @@ class RaiseValueAction implements Action<Tuple.Tuple2<Counter, CounterModel>> {
 	}
 
 	@Override
-	public boolean precondition(Tuple.Tuple2<Counter, CounterModel> tuple) {
-		return tuple.get2().getValue() + raiseBy < 100;
+	public boolean precondition(Tuple.Tuple2<BoundedCounter, CounterModel> tuple) {
+		return tuple.get2().getValue() + raiseBy < tuple.get2().getMax();
 	}
 
 	@Override
-	public Tuple.Tuple2<Counter, CounterModel> run(Tuple.Tuple2<Counter, CounterModel> tuple) {
-		Counter counter = tuple.get1();
+	public Tuple.Tuple2<BoundedCounter, CounterModel> run(Tuple.Tuple2<BoundedCounter, CounterModel> tuple) {
+		BoundedCounter counter = tuple.get1();
 		CounterModel counterModel = tuple.get2();
-		for (int i = 0; i < raiseBy; i++) {
-			counter.countUp();
-			counterModel.up();
-			assertThat(counter.value()).isEqualTo(counterModel.getValue());
-		}
+		counter.countUpBy(raiseBy);
+		counterModel.upBy(raiseBy);
+		assertThat(counter.value()).isEqualTo(counterModel.getValue());
 		return tuple;
 	}
 
@@ -0,0 +1,190 @@
+package mbt.stateful;
+
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.stateful.*;
+
+/**
+ * Collects wall times of actions across all tries of a property.
+ * Run time is split into time spent in the subject under test, measured through {@link #sut(Supplier)},
+ * and the rest, which is model bookkeeping and comparison.
+ * Recording costs a few {@code System.nanoTime()} calls and an array store per action,
+ * so it can stay switched on.
+ * Not thread-safe: actions of a sequence are expected to run on one thread.
+ */
+public class ActionTimings {
+
+	private static final int SLOWEST_SEQUENCES = 3;
+	private static final int MAX_SEQUENCE_DESCRIPTION = 500;
+
+	private static class Samples {
+		private long[] values = new long[64];
+		private int size = 0;
+
+		private void add(long value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		private long[] sorted() {
+			long[] sorted = Arrays.copyOf(values, size);
+			Arrays.sort(sorted);
+			return sorted;
+		}
+	}
+
+	private static class ActionKindTimings {
+		private final Samples preconditionNanos = new Samples();
+		private final Samples runNanos = new Samples();
+		private final Samples sutNanos = new Samples();
+		private final Samples modelNanos = new Samples();
+	}
+
+	private static class SequenceTiming {
+		private final long nanos;
+		private final String actions;
+
+		private SequenceTiming(long nanos, String actions) {
+			this.nanos = nanos;
+			this.actions = actions;
+		}
+	}
+
+	private final Map<String, ActionKindTimings> timingsByKind = new TreeMap<>();
+	private final PriorityQueue<SequenceTiming> slowestSequences =
+			new PriorityQueue<>(Comparator.comparingLong(timing -> timing.nanos));
+
+	private long sutNanos = 0;
+	private long currentSequenceNanos = 0;
+
+	public <T> Arbitrary<Action<T>> timed(Arbitrary<Action<T>> actions) {
+		return actions.map(this::timed);
+	}
+
+	public <T> Action<T> timed(Action<T> action) {
+		return new TimedAction<>(action, this);
+	}
+
+	/**
+	 * Wrap every call into the subject under test with this method.
+	 */
+	public <R> R sut(Supplier<R> sutCall) {
+		long start = System.nanoTime();
+		try {
+			return sutCall.get();
+		} finally {
+			sutNanos += System.nanoTime() - start;
+		}
+	}
+
+	long sutNanos() {
+		return sutNanos;
+	}
+
+	void recordPrecondition(Action<?> action, long nanos) {
+		kindTimings(action).preconditionNanos.add(nanos);
+		currentSequenceNanos += nanos;
+	}
+
+	void recordRun(Action<?> action, long runNanos, long sutNanos) {
+		ActionKindTimings timings = kindTimings(action);
+		timings.runNanos.add(runNanos);
+		timings.sutNanos.add(sutNanos);
+		timings.modelNanos.add(runNanos - sutNanos);
+		currentSequenceNanos += runNanos;
+	}
+
+	/**
+	 * Call after each run of a sequence to attribute the times recorded since the previous call to it.
+	 */
+	public void finishSequence(ActionSequence<?> sequence) {
+		long nanos = currentSequenceNanos;
+		currentSequenceNanos = 0;
+		if (slowestSequences.size() < SLOWEST_SEQUENCES || nanos > slowestSequences.peek().nanos) {
+			List<? extends Action<?>> runActions = sequence.runActions();
+			String actions = runActions.size() + " actions: " +
+									 runActions.stream().map(Object::toString).collect(Collectors.joining(", "));
+			if (actions.length() > MAX_SEQUENCE_DESCRIPTION) {
+				actions = actions.substring(0, MAX_SEQUENCE_DESCRIPTION) + "...";
+			}
+			slowestSequences.add(new SequenceTiming(nanos, actions));
+			if (slowestSequences.size() > SLOWEST_SEQUENCES) {
+				slowestSequences.poll();
+			}
+		}
+	}
+
+	public boolean isEmpty() {
+		return timingsByKind.isEmpty();
+	}
+
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format(
+				"%-24s %8s | %-31s | %-31s | %-31s | %-15s%n",
+				"action timings [us]", "count",
+				"run p50/p90/p99/max", "sut p50/p90/p99/max", "model p50/p90/p99/max", "precondition p50/p99"
+		));
+		timingsByKind.forEach((kind, timings) -> {
+			long[] precondition = timings.preconditionNanos.sorted();
+			report.append(String.format(
+					"%-24s %8d | %-31s | %-31s | %-31s | %7s %7s%n",
+					kind,
+					timings.runNanos.size,
+					percentiles(timings.runNanos.sorted()),
+					percentiles(timings.sutNanos.sorted()),
+					percentiles(timings.modelNanos.sorted()),
+					micros(percentile(precondition, 50)),
+					micros(percentile(precondition, 99))
+			));
+		});
+		List<SequenceTiming> slowest = new ArrayList<>(slowestSequences);
+		slowest.sort(Comparator.comparingLong((SequenceTiming timing) -> timing.nanos).reversed());
+		report.append(String.format("slowest sequences:%n"));
+		for (SequenceTiming timing : slowest) {
+			report.append(String.format("  %s us: %s%n", micros(timing.nanos), timing.actions));
+		}
+		return report.toString();
+	}
+
+	/**
+	 * Simple class name of an action, looking through the timing decorator.
+	 */
+	public static String actionKind(Action<?> action) {
+		if (action instanceof TimedAction) {
+			return actionKind(((TimedAction<?>) action).action());
+		}
+		return action.getClass().getSimpleName();
+	}
+
+	private ActionKindTimings kindTimings(Action<?> action) {
+		return timingsByKind.computeIfAbsent(actionKind(action), ignore -> new ActionKindTimings());
+	}
+
+	private static String percentiles(long[] sorted) {
+		return String.format(
+				"%7s %7s %7s %7s",
+				micros(percentile(sorted, 50)),
+				micros(percentile(sorted, 90)),
+				micros(percentile(sorted, 99)),
+				micros(percentile(sorted, 100))
+		);
+	}
+
+	private static long percentile(long[] sorted, int percentile) {
+		if (sorted.length == 0) {
+			return 0;
+		}
+		int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+		return sorted[Math.max(0, index)];
+	}
+
+	private static String micros(long nanos) {
+		return String.valueOf(nanos / 1000);
+	}
+}
@@ -0,0 +1,30 @@
+package mbt.stateful;
+
+import java.util.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.stateful.*;
+
+/**
+ * Alternative to {@code Arbitraries.sequences(Arbitraries.oneOf(...))} for stateful properties:
+ * instead of picking an action kind blindly up front, each step picks among one candidate of every kind
+ * when it runs, biased towards transitions that lead to rarely covered abstract states.
+ * Each action uses the coverage as it was when the action was generated, so shrinking does not change the choice.
+ */
+public class CoverageGuidedActions {
+
+	private CoverageGuidedActions() {
+	}
+
+	public static <T> ActionSequenceArbitrary<T> sequences(
+			StateCoverage<T> coverage,
+			List<Arbitrary<Action<T>>> actionKinds
+	) {
+		Arbitrary<List<Action<T>>> candidates = Combinators.combine(actionKinds).as(actions -> actions);
+		Arbitrary<StateCoverage<T>> snapshots = Arbitraries.randomValue(random -> coverage.snapshot());
+		Arbitrary<Action<T>> guidedActions =
+				Combinators.combine(candidates, Arbitraries.longs(), snapshots)
+						   .as((actions, seed, snapshot) -> new GuidedAction<>(actions, seed, snapshot, coverage));
+		return Arbitraries.sequences(guidedActions);
+	}
+}
@@ -0,0 +1,180 @@
+package mbt.stateful;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+import net.jqwik.api.stateful.*;
+
+/**
+ * Failing action sequences of a property stored in a file, so that they can be replayed
+ * without generating and shrinking, and independent of seeds and generator changes.
+ * <p>
+ * Run sequences through {@link #run(ActionSequence, Object)} and call {@link #saveLastFailure()} after the property.
+ * Since jqwik keeps shrinking as long as a smaller sequence fails, the last failing sequence is the shrunk one.
+ * Failures are only saved when the system property {@value #RECORD_PROPERTY} is {@code true},
+ * e.g. with {@code gradle test -PrecordFailureCorpus}, so that normal test runs leave the checkout untouched.
+ * <p>
+ * The file has one action per line with tab separated fields and a blank line after each sequence.
+ * Backslashes, control characters and surrogates in fields are escaped.
+ */
+public class FailureCorpus<T> {
+
+	/**
+	 * Translates actions to fields and back. The first field names the kind of action.
+	 */
+	public interface Codec<T> {
+		List<String> encode(Action<T> action);
+
+		Action<T> decode(List<String> fields);
+	}
+
+	public static final String RECORD_PROPERTY = "mbt.recordFailureCorpus";
+
+	private final Path file;
+	private final Codec<T> codec;
+	private final boolean recording;
+	private List<Action<T>> lastFailure = null;
+
+	public FailureCorpus(Path file, Codec<T> codec) {
+		this(file, codec, Boolean.getBoolean(RECORD_PROPERTY));
+	}
+
+	public FailureCorpus(Path file, Codec<T> codec, boolean recording) {
+		this.file = file;
+		this.codec = codec;
+		this.recording = recording;
+	}
+
+	public T run(ActionSequence<T> sequence, T initialState) {
+		try {
+			return sequence.run(initialState);
+		} catch (RuntimeException | Error failure) {
+			lastFailure = new ArrayList<>(sequence.runActions());
+			throw failure;
+		}
+	}
+
+	public void saveLastFailure() throws IOException {
+		if (lastFailure == null || !recording) {
+			lastFailure = null;
+			return;
+		}
+		String entry = lastFailure.stream()
+								  .map(action -> encodeLine(codec.encode(unwrap(action))))
+								  .collect(Collectors.joining("\n"));
+		lastFailure = null;
+		if (Files.exists(file) && entries().contains(entry)) {
+			return;
+		}
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		Files.write(
+				file, (entry + "\n\n").getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND
+		);
+	}
+
+	public List<List<Action<T>>> load() throws IOException {
+		List<List<Action<T>>> sequences = new ArrayList<>();
+		if (!Files.exists(file)) {
+			return sequences;
+		}
+		for (String entry : entries()) {
+			List<Action<T>> actions = new ArrayList<>();
+			for (String line : entry.split("\n")) {
+				if (!line.isEmpty()) {
+					actions.add(codec.decode(decodeLine(line)));
+				}
+			}
+			sequences.add(actions);
+		}
+		return sequences;
+	}
+
+	/**
+	 * Runs all stored sequences, each on a fresh initial state. Actions whose precondition does not hold are skipped.
+	 */
+	public void replay(Supplier<T> initialState) throws IOException {
+		List<List<Action<T>>> sequences = load();
+		for (int index = 0; index < sequences.size(); index++) {
+			List<Action<T>> actions = sequences.get(index);
+			T state = initialState.get();
+			for (Action<T> action : actions) {
+				if (!action.precondition(state)) {
+					continue;
+				}
+				try {
+					state = action.run(state);
+				} catch (RuntimeException | Error failure) {
+					throw new AssertionError(String.format(
+							"Sequence %d of %s failed at %s:%n    %s",
+							index + 1, file, action,
+							actions.stream().map(Object::toString).collect(Collectors.joining(String.format("%n    ")))
+					), failure);
+				}
+			}
+		}
+	}
+
+	public int size() throws IOException {
+		return load().size();
+	}
+
+	private List<String> entries() throws IOException {
+		String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+		return Arrays.stream(content.split("\n\n+"))
+					 .map(entry -> entry.replaceAll("^\n+|\n+$", ""))
+					 .filter(entry -> !entry.isEmpty())
+					 .collect(Collectors.toList());
+	}
+
+	private Action<T> unwrap(Action<T> action) {
+		if (action instanceof TimedAction) {
+			return unwrap(((TimedAction<T>) action).action());
+		}
+		return action;
+	}
+
+	// Control characters and surrogates are escaped, since generated strings would not survive UTF-8 otherwise
+	private static String encodeLine(List<String> fields) {
+		return fields.stream().map(FailureCorpus::escape).collect(Collectors.joining("\t"));
+	}
+
+	private static String escape(String field) {
+		StringBuilder escaped = new StringBuilder();
+		for (char c : field.toCharArray()) {
+			if (c == '\\') {
+				escaped.append("\\\\");
+			} else if (c < 0x20 || c == 0x7f || Character.isSurrogate(c)) {
+				escaped.append(String.format("\\u%04x", (int) c));
+			} else {
+				escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	private static List<String> decodeLine(String line) {
+		List<String> fields = new ArrayList<>();
+		for (String field : line.split("\t", -1)) {
+			StringBuilder decoded = new StringBuilder();
+			for (int i = 0; i < field.length(); i++) {
+				char c = field.charAt(i);
+				if (c == '\\' && field.charAt(i + 1) == 'u') {
+					decoded.append((char) Integer.parseInt(field.substring(i + 2, i + 6), 16));
+					i += 5;
+				} else if (c == '\\') {
+					decoded.append(field.charAt(++i));
+				} else {
+					decoded.append(c);
+				}
+			}
+			fields.add(decoded.toString());
+		}
+		return fields;
+	}
+}
@@ -0,0 +1,72 @@
+package mbt.stateful;
+
+import java.util.*;
+import java.util.stream.*;
+
+import net.jqwik.api.stateful.*;
+
+/**
+ * Holds one generated candidate per action kind and decides at run time which one to run,
+ * preferring candidates whose transitions from the current state were least covered when the action was generated.
+ * The choice depends only on the state, the seed and that coverage snapshot,
+ * so shrinking and replaying run the same candidate for the same state.
+ */
+class GuidedAction<T> implements Action<T> {
+
+	private final List<Action<T>> candidates;
+	private final long seed;
+	private final StateCoverage<T> snapshot;
+	private final StateCoverage<T> coverage;
+
+	GuidedAction(List<Action<T>> candidates, long seed, StateCoverage<T> snapshot, StateCoverage<T> coverage) {
+		this.candidates = Collections.unmodifiableList(new ArrayList<>(candidates));
+		this.seed = seed;
+		this.snapshot = snapshot;
+		this.coverage = coverage;
+	}
+
+	@Override
+	public boolean precondition(T state) {
+		return candidates.stream().anyMatch(candidate -> candidate.precondition(state));
+	}
+
+	@Override
+	public T run(T state) {
+		String from = coverage.classify(state);
+		Action<T> chosen = choose(from, state);
+		T nextState = chosen.run(state);
+		coverage.recordTransition(from, kind(chosen), coverage.classify(nextState));
+		return nextState;
+	}
+
+	private Action<T> choose(String from, T state) {
+		List<Action<T>> eligible = candidates.stream()
+											 .filter(candidate -> candidate.precondition(state))
+											 .collect(Collectors.toList());
+		double[] weights = new double[eligible.size()];
+		double totalWeight = 0.0;
+		for (int i = 0; i < eligible.size(); i++) {
+			// squaring sharpens the preference for novel transitions
+			double novelty = snapshot.novelty(from, kind(eligible.get(i)));
+			weights[i] = novelty * novelty;
+			totalWeight += weights[i];
+		}
+		double pick = new Random(seed).nextDouble() * totalWeight;
+		for (int i = 0; i < eligible.size(); i++) {
+			pick -= weights[i];
+			if (pick < 0) {
+				return eligible.get(i);
+			}
+		}
+		return eligible.get(eligible.size() - 1);
+	}
+
+	private static String kind(Action<?> action) {
+		return action.getClass().getSimpleName();
+	}
+
+	@Override
+	public String toString() {
+		return candidates.stream().map(Object::toString).collect(Collectors.joining(" | ", "guided[", "]"));
+	}
+}
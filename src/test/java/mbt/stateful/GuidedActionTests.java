@@ -0,0 +1,52 @@
+package mbt.stateful;
+
+import java.util.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GuidedActionTests {
+
+	@Property
+	void sameStateRunsSameCandidateAfterCoverageChanged(@ForAll long seed) {
+		StateCoverage<Integer> coverage = new StateCoverage<>(String::valueOf);
+		GuidedAction<Integer> action = new GuidedAction<>(
+				Arrays.asList(new AddOne(), new AddTwo()), seed, coverage.snapshot(), coverage
+		);
+		String before = action.toString();
+
+		int firstRun = action.run(0);
+		for (int i = 0; i < 100; i++) {
+			coverage.recordTransition("0", firstRun == 1 ? "AddOne" : "AddTwo", String.valueOf(firstRun));
+		}
+
+		assertThat(action.run(0)).isEqualTo(firstRun);
+		assertThat(action.toString()).isEqualTo(before);
+	}
+
+	private static class AddOne implements Action<Integer> {
+		@Override
+		public Integer run(Integer state) {
+			return state + 1;
+		}
+
+		@Override
+		public String toString() {
+			return "add one";
+		}
+	}
+
+	private static class AddTwo implements Action<Integer> {
+		@Override
+		public Integer run(Integer state) {
+			return state + 2;
+		}
+
+		@Override
+		public String toString() {
+			return "add two";
+		}
+	}
+}
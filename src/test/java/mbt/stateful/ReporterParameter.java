@@ -0,0 +1,26 @@
+package mbt.stateful;
+
+import java.util.*;
+
+import net.jqwik.api.lifecycle.*;
+
+/**
+ * Resolves parameters of type {@link Reporter}, so that lifecycle methods like {@code @AfterProperty}
+ * can publish their reports through jqwik instead of printing to stdout.
+ * Add it to a container with {@code @AddLifecycleHook(ReporterParameter.class)}.
+ */
+public class ReporterParameter implements ResolveParameterHook {
+
+	@Override
+	public PropagationMode propagateTo() {
+		return PropagationMode.ALL_DESCENDANTS;
+	}
+
+	@Override
+	public Optional<ParameterSupplier> resolve(ParameterResolutionContext parameterContext, LifecycleContext lifecycleContext) {
+		if (!parameterContext.typeUsage().isOfType(Reporter.class)) {
+			return Optional.empty();
+		}
+		return Optional.of(optionalTry -> lifecycleContext.reporter());
+	}
+}
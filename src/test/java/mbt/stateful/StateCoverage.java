@@ -0,0 +1,69 @@
+package mbt.stateful;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Remembers which abstract states have been visited and where each action kind has led from which state.
+ * Shared across all tries of a property so that later tries can be steered towards rarely visited states.
+ */
+public class StateCoverage<T> {
+
+	private final Function<T, String> classifier;
+	private final Map<String, Integer> visits = new HashMap<>();
+	private final Map<String, Map<String, Integer>> outcomes = new HashMap<>();
+
+	public StateCoverage(Function<T, String> classifier) {
+		this.classifier = classifier;
+	}
+
+	public String classify(T state) {
+		return classifier.apply(state);
+	}
+
+	public synchronized void recordTransition(String from, String actionKind, String to) {
+		visits.merge(to, 1, Integer::sum);
+		outcomes.computeIfAbsent(transitionKey(from, actionKind), ignore -> new HashMap<>())
+				.merge(to, 1, Integer::sum);
+	}
+
+	/**
+	 * Expected novelty of the state reached by running an action of {@code actionKind} in {@code from}:
+	 * 1.0 for a transition never tried before, otherwise the outcome-weighted average of 1 / (1 + visits).
+	 */
+	public synchronized double novelty(String from, String actionKind) {
+		Map<String, Integer> targets = outcomes.get(transitionKey(from, actionKind));
+		if (targets == null) {
+			return 1.0;
+		}
+		int total = targets.values().stream().mapToInt(Integer::intValue).sum();
+		double novelty = 0.0;
+		for (Map.Entry<String, Integer> target : targets.entrySet()) {
+			double share = (double) target.getValue() / total;
+			novelty += share / (1 + visits.getOrDefault(target.getKey(), 0));
+		}
+		return novelty;
+	}
+
+	/**
+	 * A copy of the coverage recorded so far, which later transitions do not change.
+	 */
+	public synchronized StateCoverage<T> snapshot() {
+		StateCoverage<T> snapshot = new StateCoverage<>(classifier);
+		snapshot.visits.putAll(visits);
+		outcomes.forEach((transition, targets) -> snapshot.outcomes.put(transition, new HashMap<>(targets)));
+		return snapshot;
+	}
+
+	public synchronized int visits(String state) {
+		return visits.getOrDefault(state, 0);
+	}
+
+	public synchronized Set<String> visitedStates() {
+		return new TreeSet<>(visits.keySet());
+	}
+
+	private static String transitionKey(String from, String actionKind) {
+		return from + " -> " + actionKind;
+	}
+}
@@ -0,0 +1,25 @@
+package mbt.stateful;
+
+import java.lang.annotation.*;
+
+import net.jqwik.api.lifecycle.*;
+
+/**
+ * Lets a property's tries run until a wall-clock budget is used up, e.g. for long soak runs.
+ * The budget is opt-in through the system property {@code mbt.timeBudgetSeconds};
+ * without it the property stops after a fixed number of {@link #tries()}, so that normal test runs
+ * do not depend on the speed of the machine.
+ * Set {@code tries} of the property high enough never to be reached.
+ * Under a budget, sequences generated through {@link TimeBudgetRun#sequences} adapt their length to the budget left.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@AddLifecycleHook(TimeBudgetRun.class)
+public @interface TimeBudget {
+
+	int tries() default 100;
+
+	int minLength() default 1;
+
+	int maxLength() default 200;
+}
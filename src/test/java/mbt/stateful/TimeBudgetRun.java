@@ -0,0 +1,150 @@
+package mbt.stateful;
+
+import java.time.*;
+import java.util.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.lifecycle.*;
+import net.jqwik.api.stateful.*;
+
+/**
+ * Lifecycle hook behind {@link TimeBudget}. It stops a property's tries once the budget is used up,
+ * or after the annotation's fixed number of tries when no budget is set,
+ * and publishes tries/s, actions/s and the distribution of sequence lengths when the property ends.
+ * <p>
+ * After every try the maximum sequence length is set so that the whole budget suffices
+ * for about {@value #TARGET_TRIES} tries at the measured time per action:
+ * long budgets get long sequences that reach deep states, short budgets many short sequences.
+ */
+public class TimeBudgetRun implements AroundPropertyHook, AroundTryHook {
+
+	public static final String SECONDS_PROPERTY = "mbt.timeBudgetSeconds";
+
+	private static final int TARGET_TRIES = 200;
+	private static final int INITIAL_MAX_LENGTH = 10;
+	private static final int DEFAULT_MAX_LENGTH = 32;
+	private static final Object STORE = TimeBudgetRun.class;
+
+	private static class Run {
+		private final Duration budget;
+		private final int fixedTries;
+		private final int minLength;
+		private final int maxLength;
+		private final long startNanos = System.nanoTime();
+		private final SortedMap<Integer, Integer> lengthCounts = new TreeMap<>();
+
+		private volatile int currentMaxLength;
+		private int tries = 0;
+		private long actions = 0;
+		private long tryNanos = 0;
+		private boolean failed = false;
+
+		// Without a budget the property runs fixedTries tries with sequences of the default maximum length
+		private Run(Duration budget, int fixedTries, int minLength, int maxLength) {
+			this.budget = budget;
+			this.fixedTries = fixedTries;
+			this.minLength = minLength;
+			this.maxLength = maxLength;
+			this.currentMaxLength = clamp(budget == null ? DEFAULT_MAX_LENGTH : INITIAL_MAX_LENGTH);
+		}
+
+		private boolean isUsedUp() {
+			if (budget == null) {
+				return tries >= fixedTries;
+			}
+			return budget.toNanos() - (System.nanoTime() - startNanos) <= 0;
+		}
+
+		private void recordTry(long nanos, List<Object> parameters) {
+			tries++;
+			tryNanos += nanos;
+			for (Object parameter : parameters) {
+				if (parameter instanceof ActionSequence) {
+					int length = ((ActionSequence<?>) parameter).runActions().size();
+					actions += length;
+					lengthCounts.merge(lengthBucket(length), 1, Integer::sum);
+				}
+			}
+			if (budget != null && actions > 0) {
+				double nanosPerAction = (double) tryNanos / actions;
+				currentMaxLength = clamp((int) Math.min(maxLength, budget.toNanos() / (nanosPerAction * TARGET_TRIES)));
+			}
+		}
+
+		private int clamp(int length) {
+			return Math.max(minLength, Math.min(maxLength, length));
+		}
+
+		private String report() {
+			double seconds = (System.nanoTime() - startNanos) / 1e9;
+			StringJoiner lengths = new StringJoiner(", ");
+			lengthCounts.forEach((bucket, count) -> lengths.add(String.format("<= %d: %d", bucket, count)));
+			return String.format(
+					"%d tries in %.1f s: %.1f tries/s, %.0f actions/s, max length %d, lengths {%s}",
+					tries, seconds, tries / seconds, actions / seconds, currentMaxLength, lengths
+			);
+		}
+	}
+
+	/**
+	 * Sequences of at most the current maximum length of the running {@link TimeBudget} property.
+	 * Outside such a property the maximum is {@value #DEFAULT_MAX_LENGTH}.
+	 */
+	public static <T> Arbitrary<ActionSequence<T>> sequences(Arbitrary<Action<T>> actions) {
+		return Arbitraries.randomValue(random -> 1 + random.nextInt(currentMaxLength()))
+						  .flatMap(maxLength -> Arbitraries.sequences(actions).ofMaxSize(maxLength));
+	}
+
+	private static int currentMaxLength() {
+		try {
+			return Store.<Run>get(STORE).get().currentMaxLength;
+		} catch (CannotFindStoreException noTimeBudget) {
+			return DEFAULT_MAX_LENGTH;
+		}
+	}
+
+	@Override
+	public PropertyExecutionResult aroundProperty(PropertyLifecycleContext context, PropertyExecutor property) {
+		TimeBudget budget = context.findAnnotation(TimeBudget.class).orElseThrow(
+				() -> new IllegalStateException("TimeBudgetRun needs a @TimeBudget annotation")
+		);
+		Run run = Store.create(
+				STORE, Lifespan.PROPERTY,
+				() -> new Run(budgetFromSystemProperty(), budget.tries(), budget.minLength(), budget.maxLength())
+		).get();
+		PropertyExecutionResult result = property.execute();
+		if (run.budget != null) {
+			context.reporter().publish("time budget", run.report());
+		}
+		return result;
+	}
+
+	// Once a try has failed shrinking must not be cut short
+	@Override
+	public TryExecutionResult aroundTry(TryLifecycleContext context, TryExecutor aroundTry, List<Object> parameters) {
+		Run run = Store.<Run>get(STORE).get();
+		if (!run.failed && run.isUsedUp()) {
+			return TryExecutionResult.satisfied(true);
+		}
+		long start = System.nanoTime();
+		TryExecutionResult result = aroundTry.execute(parameters);
+		if (result.status() == TryExecutionResult.Status.FALSIFIED) {
+			run.failed = true;
+		}
+		run.recordTry(System.nanoTime() - start, parameters);
+		return result;
+	}
+
+	private static Duration budgetFromSystemProperty() {
+		String seconds = System.getProperty(SECONDS_PROPERTY);
+		return seconds == null ? null : Duration.ofSeconds(Integer.parseInt(seconds));
+	}
+
+	private static int lengthBucket(int length) {
+		int bucket = 1;
+		while (bucket < length) {
+			bucket *= 2;
+		}
+		return bucket;
+	}
+}
@@ -0,0 +1,45 @@
+package mbt.stateful;
+
+import net.jqwik.api.stateful.*;
+
+class TimedAction<T> implements Action<T> {
+
+	private final Action<T> action;
+	private final ActionTimings timings;
+
+	TimedAction(Action<T> action, ActionTimings timings) {
+		this.action = action;
+		this.timings = timings;
+	}
+
+	Action<T> action() {
+		return action;
+	}
+
+	@Override
+	public boolean precondition(T state) {
+		long start = System.nanoTime();
+		try {
+			return action.precondition(state);
+		} finally {
+			timings.recordPrecondition(action, System.nanoTime() - start);
+		}
+	}
+
+	@Override
+	public T run(T state) {
+		long sutBefore = timings.sutNanos();
+		long start = System.nanoTime();
+		try {
+			return action.run(state);
+		} finally {
+			long runNanos = System.nanoTime() - start;
+			timings.recordRun(action, runNanos, timings.sutNanos() - sutBefore);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return action.toString();
+	}
+}
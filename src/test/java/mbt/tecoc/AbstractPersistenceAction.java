@@ -1,15 +1,16 @@
 package mbt.tecoc;
 
 import java.util.*;
+import java.util.stream.*;
 
 import net.jqwik.api.Tuple.*;
 import net.jqwik.api.stateful.*;
 
 import static org.assertj.core.api.Assertions.*;
 
-abstract class AbstractPersistenceAction implements Action<Tuple2<TecocPersistence, PersistenceModel>> {
+abstract class AbstractPersistenceAction implements Action<Tuple2<Persistence, PersistenceModel>> {
 
-	void compareReadUser(int userId, Tuple2<TecocPersistence, PersistenceModel> state) {
+	void compareReadUser(int userId, Tuple2<Persistence, PersistenceModel> state) {
 		Optional<User> optionalUser = state.get1().readUser(userId);
 		Optional<User> optionalUserFromModel = state.get2().readUser(userId);
 		assertThat(optionalUser.isPresent()).isEqualTo(optionalUserFromModel.isPresent());
@@ -21,7 +22,7 @@ abstract class AbstractPersistenceAction implements Action<Tuple2<TecocPersisten
 		});
 	}
 
-	void compareReadPost(int postId, Tuple2<TecocPersistence, PersistenceModel> state) {
+	void compareReadPost(int postId, Tuple2<Persistence, PersistenceModel> state) {
 		Optional<Post> optionalPost = state.get1().readPost(postId);
 		Optional<Post> optionalPostFromModel = state.get2().readPost(postId);
 		assertThat(optionalPost.isPresent()).isEqualTo(optionalPostFromModel.isPresent());
@@ -33,8 +34,79 @@ abstract class AbstractPersistenceAction implements Action<Tuple2<TecocPersisten
 		});
 	}
 
-	void compareCounts(Tuple2<TecocPersistence, PersistenceModel> state) {
-		assertThat(state.get1().countUsers()).isEqualTo(state.get2().countUsers());
-		assertThat(state.get1().countPosts()).isEqualTo(state.get2().countPosts());
+	void compareCountPostsByUser(int userId, Tuple2<Persistence, PersistenceModel> state) {
+		assertThat(state.get1().countPostsByUser(userId)).isEqualTo(state.get2().countPostsByUser(userId));
+	}
+
+	/**
+	 * Compares all users and posts through their digests in one round trip.
+	 * Only if the digests differ rows are read back to describe the differences.
+	 */
+	void compareState(Tuple2<Persistence, PersistenceModel> state) {
+		StateDigest digest = state.get1().stateDigest();
+		StateDigest modelDigest = state.get2().stateDigest();
+		if (digest.equals(modelDigest)) {
+			return;
+		}
+		List<String> differences = new ArrayList<>();
+		if (digest.usersDiffer(modelDigest)) {
+			differences.addAll(diffUsers(state));
+		}
+		if (digest.postsDiffer(modelDigest)) {
+			differences.addAll(diffPosts(state));
+		}
+		fail(
+				"State differs from model%n  persistence: %s%n  model: %s%n  %s",
+				digest, modelDigest, String.join(String.format("%n  "), differences)
+		);
+	}
+
+	private List<String> diffUsers(Tuple2<Persistence, PersistenceModel> state) {
+		List<String> differences = new ArrayList<>();
+		List<User> modelUsers = state.get2().users();
+		List<Integer> userIds = modelUsers.stream().map(User::getId).collect(Collectors.toList());
+		Map<Integer, User> users = state.get1().readUsers(userIds);
+		Map<Integer, Integer> postCounts = state.get1().countPostsByUsers(userIds);
+		for (User modelUser : modelUsers) {
+			int userId = modelUser.getId();
+			User user = users.get(userId);
+			if (user == null) {
+				differences.add(String.format("user %d is missing", userId));
+			} else if (!user.getName().equals(modelUser.getName()) || !user.getEmail().equals(modelUser.getEmail())) {
+				differences.add(String.format("user %d is %s but should be %s", userId, user, modelUser));
+			}
+			int modelPostCount = state.get2().countPostsByUser(userId);
+			if (!postCounts.get(userId).equals(modelPostCount)) {
+				differences.add(String.format(
+						"user %d has post count %d but should have %d", userId, postCounts.get(userId), modelPostCount
+				));
+			}
+		}
+		if (users.size() != state.get1().countUsers()) {
+			differences.add(String.format("%d users are not in the model", state.get1().countUsers() - users.size()));
+		}
+		return differences;
+	}
+
+	private List<String> diffPosts(Tuple2<Persistence, PersistenceModel> state) {
+		List<String> differences = new ArrayList<>();
+		List<Post> modelPosts = state.get2().posts();
+		Map<Integer, Post> posts = state.get1().readPosts(
+				modelPosts.stream().map(Post::getId).collect(Collectors.toList())
+		);
+		for (Post modelPost : modelPosts) {
+			Post post = posts.get(modelPost.getId());
+			if (post == null) {
+				differences.add(String.format("post %d is missing", modelPost.getId()));
+			} else if (post.getUserId() != modelPost.getUserId()
+							   || !post.getTitle().equals(modelPost.getTitle())
+							   || !post.getBody().equals(modelPost.getBody())) {
+				differences.add(String.format("post %d is %s but should be %s", modelPost.getId(), post, modelPost));
+			}
+		}
+		if (posts.size() != state.get1().countPosts()) {
+			differences.add(String.format("%d posts are not in the model", state.get1().countPosts() - posts.size()));
+		}
+		return differences;
 	}
 }
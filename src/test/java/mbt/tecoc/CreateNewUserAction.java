@@ -14,15 +14,23 @@ class CreateNewUserAction extends AbstractPersistenceAction {
 		this.userEmail = userEmail;
 	}
 
+	String userName() {
+		return userName;
+	}
+
+	String userEmail() {
+		return userEmail;
+	}
+
 	@Override
-	public Tuple2<TecocPersistence, PersistenceModel> run(Tuple2<TecocPersistence, PersistenceModel> state) {
+	public Tuple2<Persistence, PersistenceModel> run(Tuple2<Persistence, PersistenceModel> state) {
 		User newUser = new User(userName, userEmail);
 		int newId = state.get1().createUser(newUser);
 		assertThat(newId).isNotZero();
 		state.get2().addUser(newId, newUser);
 
 		compareReadUser(newId, state);
-		compareCounts(state);
+		compareState(state);
 
 		return state;
 	}
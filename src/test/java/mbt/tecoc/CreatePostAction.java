@@ -16,13 +16,25 @@ class CreatePostAction extends AbstractPersistenceAction {
 		this.body = body;
 	}
 
+	int userIndex() {
+		return userIndex;
+	}
+
+	String title() {
+		return title;
+	}
+
+	String body() {
+		return body;
+	}
+
 	@Override
-	public boolean precondition(Tuple2<TecocPersistence, PersistenceModel> state) {
+	public boolean precondition(Tuple2<Persistence, PersistenceModel> state) {
 		return state.get2().countUsers() >= 1;
 	}
 
 	@Override
-	public Tuple2<TecocPersistence, PersistenceModel> run(Tuple2<TecocPersistence, PersistenceModel> state) {
+	public Tuple2<Persistence, PersistenceModel> run(Tuple2<Persistence, PersistenceModel> state) {
 		int userId = state.get2().userByIndex(userIndex).getId();
 		Post newPost = new Post(userId, title, body);
 		int newId = state.get1().createPost(newPost);
@@ -30,7 +42,8 @@ class CreatePostAction extends AbstractPersistenceAction {
 		state.get2().addPost(newId, newPost);
 
 		compareReadPost(newId, state);
-		compareCounts(state);
+		compareCountPostsByUser(userId, state);
+		compareState(state);
 
 		return state;
 	}
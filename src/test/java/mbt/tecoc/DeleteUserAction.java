@@ -10,8 +10,12 @@ class DeleteUserAction extends AbstractPersistenceAction {
 		this.userIndex = userIndex;
 	}
 
+	int userIndex() {
+		return userIndex;
+	}
+
 	@Override
-	public boolean precondition(Tuple2<TecocPersistence, PersistenceModel> state) {
+	public boolean precondition(Tuple2<Persistence, PersistenceModel> state) {
 		PersistenceModel model = state.get2();
 		if (model.countUsers() == 0) {
 			return false;
@@ -21,12 +25,12 @@ class DeleteUserAction extends AbstractPersistenceAction {
 	}
 
 	@Override
-	public Tuple2<TecocPersistence, PersistenceModel> run(Tuple2<TecocPersistence, PersistenceModel> state) {
+	public Tuple2<Persistence, PersistenceModel> run(Tuple2<Persistence, PersistenceModel> state) {
 		int userId = state.get2().userByIndex(userIndex).getId();
 		state.get1().deleteUser(userId);
 		state.get2().removeUser(userId);
 
-		compareCounts(state);
+		compareState(state);
 
 		return state;
 	}
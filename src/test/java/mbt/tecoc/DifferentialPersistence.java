@@ -0,0 +1,243 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.util.stream.*;
+
+/**
+ * Forwards every call to several backends in parallel and fails as soon as their observable results differ.
+ * Results are compared by content, a failing call must fail on all backends with the same kind of JDBC exception.
+ * The first backend's result is returned, so actions and model checks run unchanged on top of it.
+ * <p>
+ * Each backend has its own thread, which also measures how long the backend spends in its calls.
+ */
+class DifferentialPersistence implements Persistence, AutoCloseable {
+
+	private static class Backend {
+		private final String name;
+		private final Persistence persistence;
+		private final ExecutorService executor;
+		private long calls = 0;
+		private long nanos = 0;
+
+		private Backend(String name, Persistence persistence) {
+			this.name = name;
+			this.persistence = persistence;
+			this.executor = Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "differential-" + name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+
+	private static class Outcome<T> {
+		private final T result;
+		private final RuntimeException failure;
+		private final Object observable;
+
+		private Outcome(T result, RuntimeException failure, Object observable) {
+			this.result = result;
+			this.failure = failure;
+			this.observable = observable;
+		}
+	}
+
+	private final List<Backend> backends = new ArrayList<>();
+
+	DifferentialPersistence(Map<String, ? extends Persistence> backends) {
+		if (backends.isEmpty()) {
+			throw new IllegalArgumentException("At least one backend is needed");
+		}
+		backends.forEach((name, persistence) -> this.backends.add(new Backend(name, persistence)));
+	}
+
+	long calls() {
+		return backends.get(0).calls;
+	}
+
+	String report() {
+		return backends.stream()
+					   .map(backend -> String.format(
+							   "%-12s %8d calls in %6d ms: %8.0f calls/s",
+							   backend.name, backend.calls, backend.nanos / 1_000_000,
+							   backend.nanos == 0 ? 0.0 : backend.calls * 1e9 / backend.nanos
+					   ))
+					   .collect(Collectors.joining(String.format("%n")));
+	}
+
+	@Override
+	public void close() {
+		backends.forEach(backend -> backend.executor.shutdownNow());
+	}
+
+	@Override
+	public void reset() {
+		onAll("reset()", persistence -> {
+			persistence.reset();
+			return null;
+		});
+	}
+
+	@Override
+	public int countUsers() {
+		return onAll("countUsers()", Persistence::countUsers);
+	}
+
+	@Override
+	public int createUser(User newUser) {
+		return onAll("createUser(" + newUser + ")", persistence -> persistence.createUser(newUser));
+	}
+
+	@Override
+	public Optional<User> readUser(int userId) {
+		return onAll("readUser(" + userId + ")", persistence -> persistence.readUser(userId));
+	}
+
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		return onAll("readUsers(" + userIds + ")", persistence -> persistence.readUsers(userIds));
+	}
+
+	@Override
+	public boolean deleteUser(int userId) {
+		return onAll("deleteUser(" + userId + ")", persistence -> persistence.deleteUser(userId));
+	}
+
+	@Override
+	public int countPosts() {
+		return onAll("countPosts()", Persistence::countPosts);
+	}
+
+	@Override
+	public int createPost(Post newPost) {
+		return onAll("createPost(" + newPost + ")", persistence -> persistence.createPost(newPost));
+	}
+
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		return onAll("createPosts(" + newPosts + ")", persistence -> persistence.createPosts(newPosts));
+	}
+
+	@Override
+	public Optional<Post> readPost(int postId) {
+		return onAll("readPost(" + postId + ")", persistence -> persistence.readPost(postId));
+	}
+
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		return onAll("readPosts(" + postIds + ")", persistence -> persistence.readPosts(postIds));
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		return onAll("deletePost(" + postId + ")", persistence -> persistence.deletePost(postId));
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		return onAll("countPostsByUser(" + userId + ")", persistence -> persistence.countPostsByUser(userId));
+	}
+
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		return onAll("countPostsByUsers(" + userIds + ")", persistence -> persistence.countPostsByUsers(userIds));
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		return onAll("stateDigest()", Persistence::stateDigest);
+	}
+
+	private <T> T onAll(String call, Function<Persistence, T> operation) {
+		List<Future<Outcome<T>>> futures = new ArrayList<>();
+		for (Backend backend : backends) {
+			futures.add(backend.executor.submit(() -> run(backend, operation)));
+		}
+		List<Outcome<T>> outcomes = new ArrayList<>();
+		for (Future<Outcome<T>> future : futures) {
+			outcomes.add(await(future));
+		}
+		Outcome<T> reference = outcomes.get(0);
+		for (Outcome<T> outcome : outcomes) {
+			if (!outcome.observable.equals(reference.observable)) {
+				throw new AssertionError(describeDisagreement(call, outcomes));
+			}
+		}
+		if (reference.failure != null) {
+			throw reference.failure;
+		}
+		return reference.result;
+	}
+
+	// Lazily loaded post bodies are read here, so that they count for the backend and come from its thread
+	private static <T> Outcome<T> run(Backend backend, Function<Persistence, T> operation) {
+		long start = System.nanoTime();
+		try {
+			T result = operation.apply(backend.persistence);
+			return new Outcome<>(result, null, observable(result));
+		} catch (RuntimeException failure) {
+			return new Outcome<>(null, failure, "failed with " + failureKind(failure).getClass().getSimpleName());
+		} finally {
+			backend.nanos += System.nanoTime() - start;
+			backend.calls++;
+		}
+	}
+
+	private static <T> Outcome<T> await(Future<Outcome<T>> future) {
+		try {
+			return future.get();
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		} catch (ExecutionException executionException) {
+			throw new RuntimeException(executionException.getCause());
+		}
+	}
+
+	private <T> String describeDisagreement(String call, List<Outcome<T>> outcomes) {
+		StringBuilder description = new StringBuilder(String.format("Backends disagree on %s", call));
+		for (int i = 0; i < backends.size(); i++) {
+			description.append(String.format("%n  %s: %s", backends.get(i).name, outcomes.get(i).observable));
+		}
+		return description.toString();
+	}
+
+	// Creation timestamps differ between backends and are left out
+	private static Object observable(Object result) {
+		if (result instanceof Optional) {
+			return ((Optional<?>) result).map(DifferentialPersistence::observable);
+		}
+		if (result instanceof User) {
+			User user = (User) result;
+			return Arrays.asList(user.getId(), user.getName(), user.getEmail());
+		}
+		if (result instanceof Post) {
+			Post post = (Post) result;
+			return Arrays.asList(post.getId(), post.getUserId(), post.getTitle(), post.getBody());
+		}
+		if (result instanceof Map) {
+			Map<Object, Object> observables = new TreeMap<>();
+			((Map<?, ?>) result).forEach((key, value) -> observables.put(key, observable(value)));
+			return observables;
+		}
+		if (result instanceof List) {
+			return ((List<?>) result).stream().map(DifferentialPersistence::observable).collect(Collectors.toList());
+		}
+		return result == null ? "null" : result;
+	}
+
+	// The JDBC exception if there is one, so that backends not based on HSQLDB can fail the same way
+	private static Throwable failureKind(Throwable throwable) {
+		Throwable cause = throwable;
+		while (cause.getCause() != null) {
+			if (cause instanceof SQLException) {
+				return cause;
+			}
+			cause = cause.getCause();
+		}
+		return cause;
+	}
+}
@@ -0,0 +1,167 @@
+package mbt.tecoc;
+
+import java.io.*;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.stream.*;
+
+import mbt.stateful.*;
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.lifecycle.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs each action sequence step by step against every HSQLDB configuration we deploy
+ * and reports the throughput of each configuration after the property.
+ */
+@AddLifecycleHook(ReporterParameter.class)
+class DifferentialPersistenceProperties {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String username = "sa";
+	final static String password = "";
+	final static Path fileDatabaseDirectory = Paths.get("build/tmp/differential");
+
+	private static final Map<String, String> backendUrls = new LinkedHashMap<>();
+
+	static {
+		backendUrls.put("mem", "jdbc:hsqldb:mem:differential-mem;sql.syntax_pgs=true");
+		backendUrls.put("mem-mvcc", "jdbc:hsqldb:mem:differential-mvcc;hsqldb.tx=mvcc;sql.syntax_pgs=true");
+		backendUrls.put("mem-mvlocks", "jdbc:hsqldb:mem:differential-mvlocks;hsqldb.tx=mvlocks;sql.syntax_pgs=true");
+		backendUrls.put(
+				"file-cached",
+				"jdbc:hsqldb:file:" + fileDatabaseDirectory.resolve("tecoc") +
+						";hsqldb.default_table_type=cached;shutdown=true;sql.syntax_pgs=true"
+		);
+	}
+
+	private final Map<String, TecocPersistence> backends = new LinkedHashMap<>();
+	private final List<Connection> connections = new ArrayList<>();
+	private DifferentialPersistence persistence;
+
+	@BeforeContainer
+	static void initDatabaseDriver() throws Exception {
+		Class.forName(driverClassName);
+	}
+
+	@BeforeProperty
+	void initBackends() throws Exception {
+		deleteFileDatabase();
+		for (Map.Entry<String, String> backendUrl : backendUrls.entrySet()) {
+			Connection connection = DriverManager.getConnection(backendUrl.getValue(), username, password);
+			connections.add(connection);
+			TecocPersistence backend = new TecocPersistence(connection);
+			backend.initialize();
+			backends.put(backendUrl.getKey(), backend);
+		}
+		persistence = new DifferentialPersistence(backends);
+	}
+
+	// Shutting down drops the in-memory databases, so that ids start anew in all backends
+	@AfterProperty
+	void shutdownBackends(Reporter reporter) throws Exception {
+		if (persistence.calls() > 0) {
+			reporter.publish("backend throughput", persistence.report());
+		}
+		persistence.close();
+		for (Connection connection : connections) {
+			connection.createStatement().execute("SHUTDOWN");
+		}
+		connections.clear();
+		backends.clear();
+		deleteFileDatabase();
+	}
+
+	@Property(tries = 100)
+	void backendsAgreeStepByStep(@ForAll("persistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions) {
+		persistence.reset();
+		actions.run(Tuple.of(persistence, new PersistenceModel()));
+	}
+
+	@Example
+	void fileBackendUsesCachedTables() throws Exception {
+		try (Connection connection = DriverManager.getConnection(backendUrls.get("file-cached"), username, password)) {
+			ResultSet resultSet = connection.createStatement().executeQuery(
+					"SELECT table_name, hsqldb_type FROM INFORMATION_SCHEMA.SYSTEM_TABLES " +
+							"WHERE table_schem = 'PUBLIC' AND table_name IN ('USERS', 'POSTS')"
+			);
+			List<String> tableTypes = new ArrayList<>();
+			while (resultSet.next()) {
+				tableTypes.add(resultSet.getString("hsqldb_type"));
+			}
+			assertThat(tableTypes).containsExactly("CACHED", "CACHED");
+		}
+	}
+
+	@Example
+	void disagreementIsReported() {
+		Map<String, Persistence> differing = new LinkedHashMap<>();
+		differing.put("empty", new InMemoryPersistence());
+		InMemoryPersistence withUser = new InMemoryPersistence();
+		withUser.createUser(new User("Johannes", "jl@johanneslink.net"));
+		differing.put("with-user", withUser);
+
+		try (DifferentialPersistence differential = new DifferentialPersistence(differing)) {
+			assertThatThrownBy(differential::countUsers)
+					.isInstanceOf(AssertionError.class)
+					.hasMessageContaining("countUsers()")
+					.hasMessageContaining("empty: 0")
+					.hasMessageContaining("with-user: 1");
+		}
+	}
+
+	@Example
+	void inMemoryBackendRejectsMissingFieldsLikeTecoc() throws SQLException {
+		Connection connection = DriverManager.getConnection(
+				"jdbc:hsqldb:mem:differential-nulls;sql.syntax_pgs=true", username, password
+		);
+		TecocPersistence tecoc = new TecocPersistence(connection);
+		tecoc.initialize();
+		Map<String, Persistence> backends = new LinkedHashMap<>();
+		backends.put("tecoc", tecoc);
+		backends.put("in-memory", new InMemoryPersistence());
+
+		try (DifferentialPersistence differential = new DifferentialPersistence(backends)) {
+			int userId = differential.createUser(new User("Johannes", "jl@johanneslink.net"));
+
+			assertThatThrownBy(() -> differential.createUser(new User(null, "jl@johanneslink.net")))
+					.isNotInstanceOf(AssertionError.class)
+					.hasCauseInstanceOf(SQLIntegrityConstraintViolationException.class);
+			assertThatThrownBy(() -> differential.createUser(new User("Johannes", null)))
+					.isNotInstanceOf(AssertionError.class)
+					.hasCauseInstanceOf(SQLIntegrityConstraintViolationException.class);
+			assertThatThrownBy(() -> differential.createPost(new Post(userId, null, "this is a body")))
+					.isNotInstanceOf(AssertionError.class)
+					.hasCauseInstanceOf(SQLIntegrityConstraintViolationException.class);
+
+			assertThat(differential.countUsers()).isEqualTo(1);
+			assertThat(differential.countPosts()).isZero();
+			assertThat(differential.countPostsByUser(userId)).isZero();
+		} finally {
+			connection.createStatement().execute("SHUTDOWN");
+		}
+	}
+
+	private static void deleteFileDatabase() throws IOException {
+		if (!Files.exists(fileDatabaseDirectory)) {
+			return;
+		}
+		List<Path> paths = new ArrayList<>();
+		try (Stream<Path> walk = Files.walk(fileDatabaseDirectory)) {
+			walk.forEach(paths::add);
+		}
+		Collections.reverse(paths);
+		for (Path path : paths) {
+			Files.delete(path);
+		}
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> persistenceActions() {
+		return PersistenceActions.sequences();
+	}
+}
@@ -0,0 +1,213 @@
+package mbt.tecoc;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+/**
+ * Wraps a JDBC connection to simulate a slow and flaky remote database.
+ * Statement executions are delayed by a configurable latency distribution and fail now and then,
+ * commits stall now and then. All decisions come from one seeded random, so a run can be reproduced.
+ * <p>
+ * Failures are thrown before the call reaches the database, so a failed statement or commit has no effect
+ * and the transaction can be rolled back and retried safely.
+ * Like a remote database, a statement waiting for its latency stops when it is cancelled.
+ */
+class FaultInjection {
+
+	static class InjectedSQLException extends SQLTransientException {
+		private static final long serialVersionUID = 1L;
+
+		InjectedSQLException(String message) {
+			super(message);
+		}
+	}
+
+	interface LatencyDistribution {
+		long nextNanos(Random random);
+
+		static LatencyDistribution none() {
+			return random -> 0;
+		}
+
+		static LatencyDistribution exponential(Duration mean) {
+			long meanNanos = mean.toNanos();
+			return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+		}
+
+		/**
+		 * Adds {@code tail} to a fraction {@code tailProbability} of all delays.
+		 */
+		default LatencyDistribution withTail(double tailProbability, Duration tail) {
+			long tailNanos = tail.toNanos();
+			return random -> {
+				long nanos = nextNanos(random);
+				return random.nextDouble() < tailProbability ? nanos + tailNanos : nanos;
+			};
+		}
+	}
+
+	private final Random random;
+	private LatencyDistribution statementLatency = LatencyDistribution.none();
+	private double statementFailureRate = 0;
+	private double commitFailureRate = 0;
+	private double commitStallProbability = 0;
+	private long commitStallNanos = 0;
+
+	private int injectedFailures = 0;
+	private int commitStalls = 0;
+	private long injectedNanos = 0;
+
+	FaultInjection(long seed) {
+		this.random = new Random(seed);
+	}
+
+	FaultInjection withStatementLatency(LatencyDistribution latency) {
+		this.statementLatency = latency;
+		return this;
+	}
+
+	FaultInjection withStatementFailures(double failureRate) {
+		this.statementFailureRate = failureRate;
+		return this;
+	}
+
+	FaultInjection withCommitFailures(double failureRate) {
+		this.commitFailureRate = failureRate;
+		return this;
+	}
+
+	FaultInjection withCommitStalls(double probability, Duration stall) {
+		this.commitStallProbability = probability;
+		this.commitStallNanos = stall.toNanos();
+		return this;
+	}
+
+	int injectedFailures() {
+		return injectedFailures;
+	}
+
+	int commitStalls() {
+		return commitStalls;
+	}
+
+	Duration injectedLatency() {
+		return Duration.ofNanos(injectedNanos);
+	}
+
+	Connection wrap(Connection connection) {
+		Connection[] faulty = new Connection[1];
+		faulty[0] = proxy(Connection.class, (method, args) -> {
+			if (method.getName().equals("commit")) {
+				beforeCommit();
+			}
+			Object result = invoke(connection, method, args);
+			if (result instanceof Statement) {
+				return wrapStatement(method.getReturnType(), (Statement) result, faulty[0]);
+			}
+			return result;
+		});
+		return faulty[0];
+	}
+
+	private Object wrapStatement(Class<?> statementType, Statement statement, Connection faulty) {
+		// Set by the executing thread and cleared by a cancelling thread
+		AtomicReference<Thread> executing = new AtomicReference<>();
+		return proxy(statementType, (method, args) -> {
+			if (method.getName().equals("getConnection")) {
+				return faulty;
+			}
+			if (method.getName().equals("cancel")) {
+				Thread waiting = executing.getAndSet(null);
+				if (waiting != null) {
+					LockSupport.unpark(waiting);
+				}
+			}
+			if (method.getName().startsWith("execute")) {
+				executing.set(Thread.currentThread());
+				if (!delay(nextStatementLatency(), () -> executing.get() == null)) {
+					throw new SQLTimeoutException("Statement was cancelled while waiting for injected latency");
+				}
+				executing.set(null);
+				beforeExecute(method.getName());
+			}
+			return invoke(statement, method, args);
+		});
+	}
+
+	private synchronized long nextStatementLatency() {
+		return statementLatency.nextNanos(random);
+	}
+
+	private synchronized void beforeExecute(String call) throws SQLException {
+		if (random.nextDouble() < statementFailureRate) {
+			injectedFailures++;
+			throw new InjectedSQLException("Injected failure of " + call);
+		}
+	}
+
+	private synchronized void beforeCommit() throws SQLException {
+		if (random.nextDouble() < commitStallProbability) {
+			commitStalls++;
+			delay(commitStallNanos, () -> false);
+		}
+		if (random.nextDouble() < commitFailureRate) {
+			injectedFailures++;
+			throw new InjectedSQLException("Injected failure of commit");
+		}
+	}
+
+	/**
+	 * @return false if the delay was cancelled
+	 */
+	private boolean delay(long nanos, BooleanSupplier cancelled) {
+		if (nanos <= 0) {
+			return true;
+		}
+		long start = System.nanoTime();
+		long remaining = nanos;
+		while (remaining > 0 && !cancelled.getAsBoolean()) {
+			LockSupport.parkNanos(remaining);
+			remaining = start + nanos - System.nanoTime();
+		}
+		addInjectedNanos(System.nanoTime() - start);
+		return remaining <= 0;
+	}
+
+	private synchronized void addInjectedNanos(long nanos) {
+		injectedNanos += nanos;
+	}
+
+	private interface Interceptor {
+		Object intercept(Method method, Object[] args) throws Throwable;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, Interceptor interceptor) {
+		return (T) Proxy.newProxyInstance(
+				FaultInjection.class.getClassLoader(),
+				new Class<?>[]{type},
+				(proxy, method, args) -> interceptor.intercept(method, args)
+		);
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException invocationTargetException) {
+			throw invocationTargetException.getCause();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"FaultInjection[failures=%d, commitStalls=%d, latency=%dms]",
+				injectedFailures, commitStalls, injectedLatency().toMillis()
+		);
+	}
+}
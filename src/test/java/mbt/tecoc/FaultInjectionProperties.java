@@ -0,0 +1,143 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.time.*;
+
+import mbt.stateful.*;
+import mbt.tecoc.FaultInjection.*;
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.constraints.*;
+import net.jqwik.api.lifecycle.*;
+import net.jqwik.api.stateful.*;
+import net.jqwik.api.statistics.Statistics;
+
+import static org.assertj.core.api.Assertions.*;
+
+@AddLifecycleHook(ReporterParameter.class)
+class FaultInjectionProperties {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String url = "jdbc:hsqldb:mem:tecoc-faults;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+
+	private Connection connection;
+	private TecocPersistence persistence;
+
+	private long actionsRun = 0;
+	private long runNanos = 0;
+
+	@BeforeContainer
+	static void initInMemoryDatabaseDriver() throws Exception {
+		Class.forName(driverClassName);
+	}
+
+	@BeforeTry
+	void initPersistence() throws SQLException {
+		connection = DriverManager.getConnection(url, username, password);
+		persistence = new TecocPersistence(connection);
+		persistence.initialize();
+	}
+
+	@AfterTry
+	void closePersistence() throws SQLException {
+		persistence.reset();
+		persistence.close();
+	}
+
+	@BeforeProperty
+	void resetThroughput() {
+		actionsRun = 0;
+		runNanos = 0;
+	}
+
+	@AfterProperty
+	void reportThroughput(Reporter reporter) {
+		if (actionsRun > 0) {
+			reporter.publish("throughput", String.format(
+					"%d actions in %d ms: %.0f actions/s", actionsRun, runNanos / 1_000_000, actionsRun * 1e9 / runNanos
+			));
+		}
+	}
+
+	@Property(tries = 200)
+	void checkPersistenceWithRetriedFaults(
+			@ForAll long seed,
+			@ForAll("persistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions
+	) {
+		LatencyDistribution latency = LatencyDistribution.exponential(Duration.ofNanos(20_000))
+														 .withTail(0.01, Duration.ofMillis(2));
+		FaultInjection faults = new FaultInjection(seed)
+										.withStatementLatency(latency)
+										.withStatementFailures(0.05)
+										.withCommitFailures(0.02)
+										.withCommitStalls(0.02, Duration.ofMillis(1));
+		RetryingPersistence retrying = new RetryingPersistence(new TecocPersistence(faults.wrap(connection)), 10);
+
+		run(actions, retrying);
+
+		Statistics.label("injected failures").collect(bucket(faults.injectedFailures()));
+		Statistics.label("retries").collect(bucket(retrying.retries()));
+	}
+
+	@Property(tries = 100)
+	void failedCallsLeaveNoTrace(@ForAll long seed, @ForAll @IntRange(min = 1, max = 30) int numberOfUsers) {
+		FaultInjection faults = new FaultInjection(seed).withStatementFailures(0.1).withCommitFailures(0.1);
+		Persistence faulty = new TecocPersistence(faults.wrap(connection));
+		PersistenceModel model = new PersistenceModel();
+
+		for (int i = 0; i < numberOfUsers; i++) {
+			try {
+				User user = new User("User" + i, "user" + i + "@somemail.com");
+				model.addUser(faulty.createUser(user), user);
+				Post post = new Post(user.getId(), "A Title", "this is a body");
+				model.addPost(faulty.createPost(post), post);
+			} catch (RuntimeException injected) {
+				assertThat(injected).hasCauseInstanceOf(InjectedSQLException.class);
+			}
+			// Checked through the fault free persistence
+			assertThat(persistence.stateDigest()).isEqualTo(model.stateDigest());
+		}
+		Statistics.label("injected failures").collect(bucket(faults.injectedFailures()));
+	}
+
+	@Example
+	void sameSeedInjectsSameFaults() {
+		assertThat(injectedFaults(42)).isEqualTo(injectedFaults(42));
+	}
+
+	private String injectedFaults(long seed) {
+		FaultInjection faults = new FaultInjection(seed).withStatementFailures(0.3).withCommitFailures(0.3);
+		TecocPersistence faulty = new TecocPersistence(faults.wrap(connection));
+		StringBuilder outcomes = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			try {
+				faulty.countUsers();
+				outcomes.append('.');
+			} catch (RuntimeException injected) {
+				outcomes.append('x');
+			}
+		}
+		return outcomes.toString();
+	}
+
+	private void run(ActionSequence<Tuple2<Persistence, PersistenceModel>> actions, Persistence faulty) {
+		long start = System.nanoTime();
+		try {
+			actions.run(Tuple.of(faulty, new PersistenceModel()));
+		} finally {
+			runNanos += System.nanoTime() - start;
+			actionsRun += actions.runActions().size();
+		}
+	}
+
+	private static String bucket(int count) {
+		return count == 0 ? "0" : count <= 2 ? "1-2" : count <= 10 ? "3-10" : "> 10";
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> persistenceActions() {
+		return PersistenceActions.sequences();
+	}
+}
@@ -0,0 +1,67 @@
+package mbt.tecoc;
+
+import java.sql.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.lifecycle.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class InMemoryPersistenceProperties {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String url = "jdbc:hsqldb:mem:tecoc;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+
+	private InMemoryPersistence persistence;
+
+	@BeforeContainer
+	static void initInMemoryDatabaseDriver() throws Exception {
+		Class.forName(driverClassName);
+	}
+
+	@BeforeTry
+	void initPersistence() {
+		persistence = new InMemoryPersistence();
+	}
+
+	@Property
+	void checkPersistence(@ForAll("persistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions) {
+		actions.run(Tuple.of(persistence, new PersistenceModel()));
+	}
+
+	@Example
+	void foreignKeyIsEnforcedLikeInTecocPersistence() throws SQLException {
+		try (TecocPersistence tecocPersistence = new TecocPersistence(DriverManager.getConnection(url, username, password))) {
+			tecocPersistence.initialize();
+			try {
+				for (Persistence each : new Persistence[]{persistence, tecocPersistence}) {
+					int userId = each.createUser(new User("Johannes", "jl@johanneslink.net"));
+					int postId = each.createPost(new Post(userId, "A Title", "this is a body"));
+
+					assertThatThrownBy(() -> each.createPost(new Post(userId + 1000, "A Title", "this is a body")))
+							.isInstanceOf(RuntimeException.class);
+					assertThatThrownBy(() -> each.deleteUser(userId))
+							.isInstanceOf(RuntimeException.class);
+					assertThat(each.readUser(userId)).isPresent();
+
+					assertThat(each.deletePost(postId)).isTrue();
+					assertThat(each.deleteUser(userId)).isTrue();
+					assertThat(each.countUsers()).isZero();
+					assertThat(each.countPosts()).isZero();
+				}
+			} finally {
+				tecocPersistence.reset();
+			}
+		}
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> persistenceActions() {
+		return PersistenceActions.sequences();
+	}
+
+}
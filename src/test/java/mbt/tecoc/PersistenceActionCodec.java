@@ -0,0 +1,52 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+import mbt.stateful.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.stateful.*;
+
+class PersistenceActionCodec implements FailureCorpus.Codec<Tuple2<Persistence, PersistenceModel>> {
+
+	@Override
+	public List<String> encode(Action<Tuple2<Persistence, PersistenceModel>> action) {
+		if (action instanceof CreateNewUserAction) {
+			CreateNewUserAction createNewUser = (CreateNewUserAction) action;
+			return Arrays.asList("create-new-user", createNewUser.userName(), createNewUser.userEmail());
+		}
+		if (action instanceof CreatePostAction) {
+			CreatePostAction createPost = (CreatePostAction) action;
+			return Arrays.asList(
+					"create-post", String.valueOf(createPost.userIndex()), createPost.title(), createPost.body()
+			);
+		}
+		if (action instanceof DeleteUserAction) {
+			return Arrays.asList("delete-user", String.valueOf(((DeleteUserAction) action).userIndex()));
+		}
+		if (action instanceof SoftDeleteUserAction) {
+			return Arrays.asList("soft-delete-user", String.valueOf(((SoftDeleteUserAction) action).userIndex()));
+		}
+		if (action instanceof PurgeDeletedAction) {
+			return Arrays.asList("purge-deleted", String.valueOf(((PurgeDeletedAction) action).batchSize()));
+		}
+		throw new IllegalArgumentException("Cannot encode persistence action: " + action);
+	}
+
+	@Override
+	public Action<Tuple2<Persistence, PersistenceModel>> decode(List<String> fields) {
+		switch (fields.get(0)) {
+			case "create-new-user":
+				return new CreateNewUserAction(fields.get(1), fields.get(2));
+			case "create-post":
+				return new CreatePostAction(Integer.parseInt(fields.get(1)), fields.get(2), fields.get(3));
+			case "delete-user":
+				return new DeleteUserAction(Integer.parseInt(fields.get(1)));
+			case "soft-delete-user":
+				return new SoftDeleteUserAction(Integer.parseInt(fields.get(1)));
+			case "purge-deleted":
+				return new PurgeDeletedAction(Integer.parseInt(fields.get(1)));
+			default:
+				throw new IllegalArgumentException("Unknown persistence action: " + fields);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+import mbt.stateful.*;
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.stateful.*;
+
+class PersistenceActions {
+
+	static Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> sequences() {
+		return Arbitraries.sequences(actions());
+	}
+
+	static Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> timedSequences(ActionTimings timings) {
+		return Arbitraries.sequences(timings.timed(actions()));
+	}
+
+	static Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> timeBudgetedSequences() {
+		return TimeBudgetRun.sequences(actions());
+	}
+
+	/**
+	 * Deleted users may have posts and purges of soft deleted rows happen in between.
+	 * Must run against a {@link TecocPersistence} in soft delete mode.
+	 */
+	static Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> softDeleteSequences() {
+		return Arbitraries.sequences(Arbitraries.frequencyOf(
+				Tuple.of(3, createNewUserAction()),
+				Tuple.of(4, createPostAction()),
+				Tuple.of(2, softDeleteUserAction()),
+				Tuple.of(1, purgeDeletedAction())
+		));
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> actions() {
+		return Arbitraries.oneOf(
+				createNewUserAction(),
+				createPostAction(),
+				deleteUserAction()
+		);
+	}
+
+	static StateCoverage<Tuple2<Persistence, PersistenceModel>> countBucketsCoverage() {
+		return new StateCoverage<>(
+				state -> String.format(
+						"users %s, posts %s",
+						countBucket(state.get2().countUsers()),
+						countBucket(state.get2().countPosts())
+				)
+		);
+	}
+
+	static ActionSequenceArbitrary<Tuple2<Persistence, PersistenceModel>> guidedSequences(
+			StateCoverage<Tuple2<Persistence, PersistenceModel>> coverage
+	) {
+		return CoverageGuidedActions.sequences(
+				coverage,
+				Arrays.asList(createNewUserAction(), createPostAction(), deleteUserAction())
+		);
+	}
+
+	private static String countBucket(int count) {
+		return count == 0 ? "0"
+					   : count <= 2 ? "1-2"
+								: count <= 5 ? "3-5"
+										 : count <= 10 ? "6-10" : "> 10";
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> deleteUserAction() {
+		Arbitrary<Integer> indices = Arbitraries.integers().between(0, 100);
+		return indices.map(DeleteUserAction::new);
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> softDeleteUserAction() {
+		Arbitrary<Integer> indices = Arbitraries.integers().between(0, 100);
+		return indices.map(SoftDeleteUserAction::new);
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> purgeDeletedAction() {
+		Arbitrary<Integer> batchSizes = Arbitraries.integers().between(1, 5);
+		return batchSizes.map(PurgeDeletedAction::new);
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> createPostAction() {
+		Arbitrary<Integer> indices = Arbitraries.integers().between(0, 100);
+		Arbitrary<String> titles = Arbitraries.strings().alpha().ofMinLength(1);
+		Arbitrary<String> bodies = Arbitraries.strings().ofMinLength(1);
+		return Combinators.combine(indices, titles, bodies).as(CreatePostAction::new);
+	}
+
+	private static Arbitrary<Action<Tuple2<Persistence, PersistenceModel>>> createNewUserAction() {
+		Arbitrary<String> names = Arbitraries.strings().alpha().ofMinLength(1);
+		return Combinators.combine(names, emails()).as(CreateNewUserAction::new);
+	}
+
+	private static Arbitrary<String> emails() {
+		Arbitrary<String> userNames = Arbitraries.oneOf(
+				Arbitraries.strings().alpha().ofMinLength(1).ofMaxLength(12),
+				Arbitraries.of("user1", "user2", "user3")
+		);
+		Arbitrary<String> domains = Arbitraries.of(
+				"somemail.com", "mymail.net", "whatever.info"
+		);
+		return Combinators.combine(userNames, domains)
+						  .as((userName, domain) -> userName + "@" + domain);
+	}
+
+}
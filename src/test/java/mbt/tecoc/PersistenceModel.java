@@ -6,6 +6,7 @@ public class PersistenceModel {
 
 	private final List<User> users = new ArrayList<>();
 	private final List<Post> posts = new ArrayList<>();
+	private final Map<Integer, Integer> postCounts = new HashMap<>();
 
 	public void addUser(int userId, User newUser) {
 		newUser.setId(userId);
@@ -30,6 +31,7 @@ public class PersistenceModel {
 	public void addPost(int postId, Post newPost) {
 		newPost.setId(postId);
 		posts.add(newPost);
+		postCounts.merge(newPost.getUserId(), 1, Integer::sum);
 	}
 
 	public int countPosts() {
@@ -43,14 +45,47 @@ public class PersistenceModel {
 	}
 
 	public void removeUser(int userId) {
+		if (!hasNoPosts(userId)) {
+			throw new IllegalStateException(String.format("User %d still has posts", userId));
+		}
 		users.removeIf(user -> user.getId() == userId);
+		postCounts.remove(userId);
+	}
+
+	/**
+	 * Soft deleting a user also deletes the user's posts.
+	 */
+	public void removeUserWithPosts(int userId) {
+		posts.removeIf(post -> post.getUserId() == userId);
+		postCounts.remove(userId);
+		removeUser(userId);
+	}
+
+	public int countPostsByUser(int userId) {
+		return postCounts.getOrDefault(userId, 0);
 	}
 
 	public boolean hasNoPosts(int userId) {
-		return posts.stream().noneMatch(post -> post.getUserId() == userId);
+		return countPostsByUser(userId) == 0;
 	}
 
 	public List<User> users() {
 		return users;
 	}
+
+	public List<Post> posts() {
+		return posts;
+	}
+
+	public StateDigest stateDigest() {
+		long usersHash = 0;
+		for (User user : users) {
+			usersHash += StateDigest.userHash(user.getId(), user.getName(), user.getEmail(), countPostsByUser(user.getId()));
+		}
+		long postsHash = 0;
+		for (Post post : posts) {
+			postsHash += StateDigest.postHash(post.getId(), post.getUserId(), post.getTitle(), post.getBody());
+		}
+		return new StateDigest(users.size(), usersHash, posts.size(), postsHash);
+	}
 }
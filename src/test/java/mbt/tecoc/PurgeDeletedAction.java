@@ -0,0 +1,48 @@
+package mbt.tecoc;
+
+import net.jqwik.api.Tuple.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Purges all soft deleted rows batch by batch. Purging must not change anything visible.
+ */
+class PurgeDeletedAction extends AbstractPersistenceAction {
+
+	private final int batchSize;
+
+	PurgeDeletedAction(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	int batchSize() {
+		return batchSize;
+	}
+
+	@Override
+	public boolean precondition(Tuple2<Persistence, PersistenceModel> state) {
+		return state.get1() instanceof TecocPersistence;
+	}
+
+	@Override
+	public Tuple2<Persistence, PersistenceModel> run(Tuple2<Persistence, PersistenceModel> state) {
+		TecocPersistence persistence = (TecocPersistence) state.get1();
+		int tombstones = persistence.countTombstones();
+		int purged = 0;
+		int batch;
+		while ((batch = persistence.purgeDeleted(batchSize)) > 0) {
+			assertThat(batch).isLessThanOrEqualTo(batchSize);
+			purged += batch;
+			compareState(state);
+		}
+		assertThat(purged).isEqualTo(tombstones);
+		assertThat(persistence.countTombstones()).isZero();
+
+		return state;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("purge-deleted[batchSize=%d]", batchSize);
+	}
+}
@@ -0,0 +1,134 @@
+package mbt.tecoc;
+
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Retries calls that failed because of a fault injected by {@link FaultInjection}.
+ * This is safe since injected faults happen before the database sees the call
+ * and {@link TecocPersistence} rolls back the whole transaction.
+ */
+class RetryingPersistence implements Persistence {
+
+	private final Persistence persistence;
+	private final int maxAttempts;
+	private int retries = 0;
+
+	RetryingPersistence(Persistence persistence, int maxAttempts) {
+		this.persistence = persistence;
+		this.maxAttempts = maxAttempts;
+	}
+
+	int retries() {
+		return retries;
+	}
+
+	@Override
+	public void reset() {
+		retry(() -> {
+			persistence.reset();
+			return null;
+		});
+	}
+
+	@Override
+	public int countUsers() {
+		return retry(persistence::countUsers);
+	}
+
+	@Override
+	public int createUser(User newUser) {
+		return retry(() -> persistence.createUser(newUser));
+	}
+
+	@Override
+	public Optional<User> readUser(int userId) {
+		return retry(() -> persistence.readUser(userId));
+	}
+
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		return retry(() -> persistence.readUsers(userIds));
+	}
+
+	@Override
+	public boolean deleteUser(int userId) {
+		return retry(() -> persistence.deleteUser(userId));
+	}
+
+	@Override
+	public int countPosts() {
+		return retry(persistence::countPosts);
+	}
+
+	@Override
+	public int createPost(Post newPost) {
+		return retry(() -> persistence.createPost(newPost));
+	}
+
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		return retry(() -> persistence.createPosts(newPosts));
+	}
+
+	@Override
+	public Optional<Post> readPost(int postId) {
+		// Lazy body loading would otherwise happen outside of the retry
+		return retry(() -> {
+			Optional<Post> post = persistence.readPost(postId);
+			post.ifPresent(Post::getBody);
+			return post;
+		});
+	}
+
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		return retry(() -> {
+			Map<Integer, Post> posts = persistence.readPosts(postIds);
+			posts.values().forEach(Post::getBody);
+			return posts;
+		});
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		return retry(() -> persistence.deletePost(postId));
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		return retry(() -> persistence.countPostsByUser(userId));
+	}
+
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		return retry(() -> persistence.countPostsByUsers(userIds));
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		return retry(persistence::stateDigest);
+	}
+
+	private <T> T retry(Supplier<T> call) {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return call.get();
+			} catch (RuntimeException exception) {
+				if (attempt >= maxAttempts || !isInjectedFault(exception)) {
+					throw exception;
+				}
+				retries++;
+			}
+		}
+	}
+
+	private static boolean isInjectedFault(Throwable exception) {
+		for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+			if (cause instanceof FaultInjection.InjectedSQLException) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
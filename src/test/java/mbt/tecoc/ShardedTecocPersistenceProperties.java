@@ -0,0 +1,152 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.util.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.Tuple.*;
+import net.jqwik.api.lifecycle.*;
+import net.jqwik.api.stateful.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ShardedTecocPersistenceProperties {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String urlTemplate = "jdbc:hsqldb:mem:tecoc-shard-%d;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+	final static int numberOfShards = 3;
+
+	private ShardedTecocPersistence persistence;
+
+	@BeforeContainer
+	static void initInMemoryDatabaseDriver() throws Exception {
+		Class.forName(driverClassName);
+	}
+
+	// Connecting and creating the schema happens once per property, tries only reset the shards
+	@BeforeProperty
+	void initPersistence() throws SQLException {
+		List<TecocPersistence> shards = new ArrayList<>();
+		for (int i = 0; i < numberOfShards; i++) {
+			Connection connection = DriverManager.getConnection(String.format(urlTemplate, i), username, password);
+			shards.add(new TecocPersistence(connection));
+		}
+		persistence = new ShardedTecocPersistence(shards);
+		persistence.initialize();
+	}
+
+	@AfterTry
+	void resetPersistence() {
+		persistence.reset();
+	}
+
+	@AfterProperty
+	void closePersistence() throws SQLException {
+		persistence.close();
+	}
+
+	@Property
+	void checkPersistence(@ForAll("persistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions) {
+		actions.run(Tuple.of(persistence, new PersistenceModel()));
+	}
+
+	@Example
+	void readUsersAndPostsAcrossShards() {
+		List<Integer> userIds = new ArrayList<>();
+		List<Integer> postIds = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			int userId = persistence.createUser(new User("User" + i, "user" + i + "@somemail.com"));
+			userIds.add(userId);
+			postIds.add(persistence.createPost(new Post(userId, "Title " + i, "this is a body")));
+		}
+
+		Map<Integer, User> users = persistence.readUsers(userIds);
+		assertThat(users.keySet()).containsExactlyInAnyOrderElementsOf(userIds);
+		users.forEach((userId, user) -> assertThat(user.getId()).isEqualTo(userId));
+
+		Map<Integer, Post> posts = persistence.readPosts(postIds);
+		assertThat(posts.keySet()).containsExactlyInAnyOrderElementsOf(postIds);
+		for (int i = 0; i < 10; i++) {
+			Post post = posts.get(postIds.get(i));
+			assertThat(post.getId()).isEqualTo(postIds.get(i));
+			assertThat(post.getUserId()).isEqualTo(userIds.get(i));
+		}
+	}
+
+	@Example
+	void postsLiveOnTheShardOfTheirUser() {
+		for (int i = 0; i < 10; i++) {
+			int userId = persistence.createUser(new User("User" + i, "user" + i + "@somemail.com"));
+			int postId = persistence.createPost(new Post(userId, "A Title", "this is a body"));
+
+			assertThat(persistence.shardOf(postId)).isEqualTo(persistence.shardOf(userId));
+			Optional<Post> post = persistence.readPost(postId);
+			assertThat(post.map(Post::getUserId)).hasValue(userId);
+			assertThat(post.map(Post::getId)).hasValue(postId);
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(1);
+		}
+		assertThat(persistence.countUsers()).isEqualTo(10);
+		assertThat(persistence.countPosts()).isEqualTo(10);
+	}
+
+	@Property(tries = 20)
+	void failedBatchLeavesNoPostsOnAnyShard(@ForAll("validUserCounts") int validUsers) {
+		List<Post> batch = new ArrayList<>();
+		for (int i = 0; i < validUsers; i++) {
+			int userId = persistence.createUser(new User("User" + i, "user" + i + "@somemail.com"));
+			batch.add(new Post(userId, "Title " + i, "this is a body"));
+		}
+		int unknownUserId = 1000 * numberOfShards + batch.size() % numberOfShards;
+		batch.add(batch.size() / 2, new Post(unknownUserId, "Orphan", "this is a body"));
+		StateDigest digest = persistence.stateDigest();
+
+		assertThatThrownBy(() -> persistence.createPosts(batch)).isInstanceOf(RuntimeException.class);
+
+		assertThat(persistence.countPosts()).isZero();
+		assertThat(persistence.stateDigest()).isEqualTo(digest);
+	}
+
+	@Example
+	void localIdsBeyondTheGlobalIdRangeFailFast() throws SQLException {
+		List<Connection> connections = new ArrayList<>();
+		List<TecocPersistence> shards = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			Connection connection = DriverManager.getConnection(
+					String.format("jdbc:hsqldb:mem:tecoc-shard-overflow-%d;sql.syntax_pgs=true", i), username, password
+			);
+			connections.add(connection);
+			shards.add(new TecocPersistence(connection));
+		}
+		try (ShardedTecocPersistence sharded = new ShardedTecocPersistence(shards)) {
+			try {
+				sharded.initialize();
+				for (Connection connection : connections) {
+					connection.createStatement().execute(
+							"ALTER TABLE users ALTER COLUMN id RESTART WITH " + (Integer.MAX_VALUE / 2 + 1)
+					);
+				}
+
+				assertThatThrownBy(() -> sharded.createUser(new User("Johannes", "jl@johanneslink.net")))
+						.isInstanceOf(IllegalStateException.class)
+						.hasMessageContaining("does not fit into a global id");
+			} finally {
+				for (Connection connection : connections) {
+					connection.createStatement().execute("SHUTDOWN");
+				}
+			}
+		}
+	}
+
+	@Provide
+	Arbitrary<Integer> validUserCounts() {
+		return Arbitraries.integers().between(numberOfShards, 3 * numberOfShards);
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> persistenceActions() {
+		return PersistenceActions.sequences();
+	}
+
+}
@@ -0,0 +1,41 @@
+package mbt.tecoc;
+
+import net.jqwik.api.Tuple.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SoftDeleteUserAction extends AbstractPersistenceAction {
+
+	private final int userIndex;
+
+	SoftDeleteUserAction(int userIndex) {
+		this.userIndex = userIndex;
+	}
+
+	int userIndex() {
+		return userIndex;
+	}
+
+	@Override
+	public boolean precondition(Tuple2<Persistence, PersistenceModel> state) {
+		return state.get2().countUsers() >= 1;
+	}
+
+	@Override
+	public Tuple2<Persistence, PersistenceModel> run(Tuple2<Persistence, PersistenceModel> state) {
+		int userId = state.get2().userByIndex(userIndex).getId();
+		assertThat(state.get1().deleteUser(userId)).isTrue();
+		state.get2().removeUserWithPosts(userId);
+
+		compareReadUser(userId, state);
+		compareCountPostsByUser(userId, state);
+		compareState(state);
+
+		return state;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("soft-delete-user[userIndex=%d]", userIndex);
+	}
+}
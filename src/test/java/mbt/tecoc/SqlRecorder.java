@@ -0,0 +1,66 @@
+package mbt.tecoc;
+
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+
+/**
+ * Wraps a JDBC connection to record the SQL of all statements prepared or executed through it.
+ */
+class SqlRecorder {
+
+	private final Set<String> statements = new LinkedHashSet<>();
+
+	Connection record(Connection connection) {
+		Connection[] recording = new Connection[1];
+		recording[0] = proxy(Connection.class, (method, args) -> {
+			if (method.getName().startsWith("prepare") && args[0] instanceof String) {
+				statements.add((String) args[0]);
+			}
+			Object result = invoke(connection, method, args);
+			if (result instanceof Statement) {
+				return recordStatement(method.getReturnType(), (Statement) result, recording[0]);
+			}
+			return result;
+		});
+		return recording[0];
+	}
+
+	Set<String> statements() {
+		return Collections.unmodifiableSet(statements);
+	}
+
+	private Object recordStatement(Class<?> statementType, Statement statement, Connection recording) {
+		return proxy(statementType, (method, args) -> {
+			if (method.getName().equals("getConnection")) {
+				return recording;
+			}
+			if ((method.getName().startsWith("execute") || method.getName().equals("addBatch"))
+						&& args != null && args.length > 0 && args[0] instanceof String) {
+				statements.add((String) args[0]);
+			}
+			return invoke(statement, method, args);
+		});
+	}
+
+	private interface Interceptor {
+		Object intercept(Method method, Object[] args) throws Throwable;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T proxy(Class<T> type, Interceptor interceptor) {
+		return (T) Proxy.newProxyInstance(
+				SqlRecorder.class.getClassLoader(),
+				new Class<?>[]{type},
+				(proxy, method, args) -> interceptor.intercept(method, args)
+		);
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException invocationTargetException) {
+			throw invocationTargetException.getCause();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Keeps a number of in-memory HSQLDB databases with the Tecoc schema ready for leasing,
+ * so that a try does not pay for connecting and creating the schema.
+ * <p>
+ * Every pooled database gets its schema through {@link TecocPersistence#initialize()}.
+ * Returned databases are reset and handed out again; databases that cannot be reset are dropped
+ * and replaced by a fresh one. Both happen on a background thread. A failure there is thrown
+ * by the next {@link #lease()}, so that a broken database does not go unnoticed.
+ */
+class TecocDatabasePool implements AutoCloseable {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String urlTemplate = "jdbc:hsqldb:mem:%s-%s;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+
+	private static final long LEASE_TIMEOUT_SECONDS = 30;
+
+	private final String name;
+	private final BlockingQueue<Connection> available = new LinkedBlockingQueue<>();
+	private final Map<TecocPersistence, Connection> leased = new ConcurrentHashMap<>();
+	private final AtomicInteger nextDatabase = new AtomicInteger();
+	private final AtomicReference<RuntimeException> refillFailure = new AtomicReference<>();
+	private final ExecutorService refiller = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "tecoc-database-pool");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private volatile boolean closed = false;
+
+	TecocDatabasePool(String name, int size) {
+		this.name = name;
+		try {
+			Class.forName(driverClassName);
+		} catch (ClassNotFoundException classNotFoundException) {
+			throw new RuntimeException(classNotFoundException);
+		}
+		for (int i = 0; i < size; i++) {
+			refill(this::addDatabase);
+		}
+	}
+
+	/**
+	 * Blocks until a database is ready. The returned persistence must be given back through {@link #release}.
+	 */
+	TecocPersistence lease() {
+		throwRefillFailure();
+		try {
+			Connection connection = available.poll(LEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			if (connection == null) {
+				throwRefillFailure();
+				throw new IllegalStateException(String.format(
+						"No database of pool %s ready after %d seconds", name, LEASE_TIMEOUT_SECONDS
+				));
+			}
+			TecocPersistence persistence = new TecocPersistence(connection);
+			leased.put(persistence, connection);
+			return persistence;
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(interruptedException);
+		}
+	}
+
+	void release(TecocPersistence persistence) {
+		Connection connection = leased.remove(persistence);
+		if (connection == null) {
+			throw new IllegalArgumentException("Persistence was not leased from this pool");
+		}
+		refill(() -> recycle(persistence, connection));
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		refiller.shutdown();
+		try {
+			refiller.awaitTermination(LEASE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (InterruptedException interruptedException) {
+			Thread.currentThread().interrupt();
+		}
+		List<Connection> remaining = new ArrayList<>(leased.values());
+		leased.clear();
+		available.drainTo(remaining);
+		RuntimeException dropFailure = null;
+		for (Connection connection : remaining) {
+			try {
+				drop(connection);
+			} catch (SQLException sqlException) {
+				if (dropFailure == null) {
+					dropFailure = new RuntimeException(sqlException);
+				} else {
+					dropFailure.addSuppressed(sqlException);
+				}
+			}
+		}
+		if (dropFailure != null) {
+			throw dropFailure;
+		}
+	}
+
+	private void refill(Runnable task) {
+		refiller.execute(() -> {
+			try {
+				task.run();
+			} catch (RuntimeException failure) {
+				if (!refillFailure.compareAndSet(null, failure)) {
+					refillFailure.get().addSuppressed(failure);
+				}
+			}
+		});
+	}
+
+	private void throwRefillFailure() {
+		RuntimeException failure = refillFailure.getAndSet(null);
+		if (failure != null) {
+			throw new IllegalStateException(String.format("Pool %s failed to prepare a database", name), failure);
+		}
+	}
+
+	private void addDatabase() {
+		if (closed) {
+			return;
+		}
+		try {
+			Connection connection = connect("db" + nextDatabase.incrementAndGet());
+			new TecocPersistence(connection).initialize();
+			available.add(connection);
+		} catch (SQLException sqlException) {
+			throw new RuntimeException(sqlException);
+		}
+	}
+
+	private void recycle(TecocPersistence persistence, Connection connection) {
+		try {
+			if (closed) {
+				drop(connection);
+				return;
+			}
+			try {
+				persistence.reset();
+				available.add(connection);
+			} catch (RuntimeException resetFailed) {
+				drop(connection);
+				addDatabase();
+				throw resetFailed;
+			}
+		} catch (SQLException sqlException) {
+			throw new RuntimeException(sqlException);
+		}
+	}
+
+	private Connection connect(String database) throws SQLException {
+		return DriverManager.getConnection(String.format(urlTemplate, name, database), username, password);
+	}
+
+	private static void drop(Connection connection) throws SQLException {
+		if (!connection.isClosed()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("SHUTDOWN");
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return String.format("TecocDatabasePool[%s, available=%d, leased=%d]", name, available.size(), leased.size());
+	}
+}
@@ -1,9 +1,11 @@
 package mbt.tecoc;
 
-import java.sql.*;
+import java.io.*;
+import java.nio.file.*;
 import java.util.*;
 import java.util.stream.*;
 
+import mbt.stateful.*;
 import net.jqwik.api.*;
 import net.jqwik.api.Tuple.*;
 import net.jqwik.api.lifecycle.*;
@@ -11,38 +13,60 @@ import net.jqwik.api.stateful.*;
 import net.jqwik.api.statistics.Statistics;
 import org.assertj.core.api.*;
 
+@AddLifecycleHook(ReporterParameter.class)
 class TecocPersistenceProperties {
 
-	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
-	final static String url = "jdbc:hsqldb:mem:tecoc;sql.syntax_pgs=true";
-	final static String username = "sa";
-	final static String password = "";
+	private static TecocDatabasePool databases;
 
 	private TecocPersistence persistence;
 
+	private final StateCoverage<Tuple2<Persistence, PersistenceModel>> coverage = PersistenceActions.countBucketsCoverage();
+	private final ActionTimings timings = new ActionTimings();
+	private final FailureCorpus<Tuple2<Persistence, PersistenceModel>> corpus = new FailureCorpus<>(
+			Paths.get("src/test/resources/corpus/checkPersistence.txt"), new PersistenceActionCodec()
+	);
+
 	@BeforeContainer
-	static void initInMemoryDatabaseDriver() throws Exception {
-		Class.forName(driverClassName);
+	static void initDatabasePool() {
+		databases = new TecocDatabasePool("tecoc-properties", 2);
+	}
+
+	@AfterContainer
+	static void closeDatabasePool() {
+		databases.close();
 	}
 
 	@BeforeTry
-	void initPersistence() throws SQLException {
-		Connection connection = DriverManager.getConnection(url, username, password);
-		persistence = new TecocPersistence(connection);
-		persistence.initialize();
+	void leasePersistence() {
+		persistence = databases.lease();
 	}
 
 	@AfterTry
-	void closePersistence() throws SQLException {
-		persistence.reset();
-		persistence.close();
+	void releasePersistence() {
+		databases.release(persistence);
+	}
+
+	@AfterProperty
+	void saveFailureCorpus() throws IOException {
+		corpus.saveLastFailure();
+	}
+
+	@AfterProperty
+	void reportTimings(Reporter reporter) {
+		if (!timings.isEmpty()) {
+			reporter.publish("action timings", timings.report());
+		}
 	}
 
 	@Property
-	void checkPersistence(@ForAll("persistenceActions") ActionSequence<Tuple2<TecocPersistence, PersistenceModel>> actions) {
-		actions.run(Tuple.of(persistence, new PersistenceModel()));
+	void checkPersistence(@ForAll("timedPersistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions) {
+		try {
+			corpus.run(actions, Tuple.of(new TimedPersistence(persistence, timings), new PersistenceModel()));
+		} finally {
+			timings.finishSequence(actions);
+		}
 
-		actions.runActions().forEach(action -> Statistics.collect(action.getClass().getSimpleName()));
+		actions.runActions().forEach(action -> Statistics.collect(ActionTimings.actionKind(action)));
 
 		int countUsers = actions.finalModel().get2().countUsers();
 		String usersClassifier = countUsers <= 10 ? "<= 10" : "> 10";
@@ -54,9 +78,44 @@ class TecocPersistenceProperties {
 		Statistics.label("posts").collect(postsClassifier);
 	}
 
+	@Property(tries = 1_000_000)
+	@TimeBudget
+	void checkPersistenceWithinTimeBudget(
+			@ForAll("timeBudgetedActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions
+	) {
+		actions.run(Tuple.of(persistence, new PersistenceModel()));
+	}
+
+	@Property
+	void checkPersistenceWithSoftDelete(
+			@ForAll("softDeleteActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions
+	) {
+		persistence.setSoftDelete(true);
+		actions.run(Tuple.of(persistence, new PersistenceModel()));
+
+		long purges = actions.runActions().stream().filter(action -> action instanceof PurgeDeletedAction).count();
+		Statistics.label("purges").collect(purges == 0 ? "0" : purges <= 2 ? "1-2" : "> 2");
+	}
+
+	@Example
+	void replayFailureCorpus() throws IOException {
+		corpus.replay(() -> {
+			persistence.reset();
+			return Tuple.of(persistence, new PersistenceModel());
+		});
+	}
+
+	@Property(tries = 200)
+	void checkPersistenceWithCoverageGuidance(
+			@ForAll("guidedPersistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions
+	) {
+		actions.peek(state -> Statistics.collect(coverage.classify(state)))
+			   .run(Tuple.of(persistence, new PersistenceModel()));
+	}
+
 	@Property(afterFailure = AfterFailureMode.RANDOM_SEED)
-	void checkDuplicateEmailsArePrevented(@ForAll("persistenceActions") ActionSequence<Tuple2<TecocPersistence, PersistenceModel>> actions) {
-		Invariant<Tuple2<TecocPersistence, PersistenceModel>> noDuplicateEmails =
+	void checkDuplicateEmailsArePrevented(@ForAll("persistenceActions") ActionSequence<Tuple2<Persistence, PersistenceModel>> actions) {
+		Invariant<Tuple2<Persistence, PersistenceModel>> noDuplicateEmails =
 				tuple -> {
 					PersistenceModel model = tuple.get2();
 					Map<String, Long> emailCounts =
@@ -78,42 +137,28 @@ class TecocPersistenceProperties {
 	}
 
 	@Provide
-	Arbitrary<ActionSequence<Tuple2<TecocPersistence, PersistenceModel>>> persistenceActions() {
-		return Arbitraries.sequences(
-				Arbitraries.oneOf(
-						createNewUserAction(),
-						createPostAction(),
-						deleteUserAction()
-				));
-	}
-
-	private Arbitrary<Action<Tuple2<TecocPersistence, PersistenceModel>>> deleteUserAction() {
-		Arbitrary<Integer> indices = Arbitraries.integers().between(0, 100);
-		return indices.map(DeleteUserAction::new);
-	}
-
-	private Arbitrary<Action<Tuple2<TecocPersistence, PersistenceModel>>> createPostAction() {
-		Arbitrary<Integer> indices = Arbitraries.integers().between(0, 100);
-		Arbitrary<String> titles = Arbitraries.strings().alpha().ofMinLength(1);
-		Arbitrary<String> bodies = Arbitraries.strings().ofMinLength(1);
-		return Combinators.combine(indices, titles, bodies).as(CreatePostAction::new);
-	}
-
-	private Arbitrary<Action<Tuple2<TecocPersistence, PersistenceModel>>> createNewUserAction() {
-		Arbitrary<String> names = Arbitraries.strings().alpha().ofMinLength(1);
-		return Combinators.combine(names, emails()).as(CreateNewUserAction::new);
-	}
-
-	private Arbitrary<String> emails() {
-		Arbitrary<String> userNames = Arbitraries.oneOf(
-				Arbitraries.strings().alpha().ofMinLength(1).ofMaxLength(12),
-				Arbitraries.of("user1", "user2", "user3")
-		);
-		Arbitrary<String> domains = Arbitraries.of(
-				"somemail.com", "mymail.net", "whatever.info"
-		);
-		return Combinators.combine(userNames, domains)
-						  .as((userName, domain) -> userName + "@" + domain);
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> timeBudgetedActions() {
+		return PersistenceActions.timeBudgetedSequences();
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> softDeleteActions() {
+		return PersistenceActions.softDeleteSequences();
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> persistenceActions() {
+		return PersistenceActions.sequences();
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> timedPersistenceActions() {
+		return PersistenceActions.timedSequences(timings);
+	}
+
+	@Provide
+	Arbitrary<ActionSequence<Tuple2<Persistence, PersistenceModel>>> guidedPersistenceActions() {
+		return PersistenceActions.guidedSequences(coverage);
 	}
 
 }
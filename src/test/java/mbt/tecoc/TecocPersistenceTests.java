@@ -1,7 +1,11 @@
 package mbt.tecoc;
 
+import java.lang.reflect.*;
 import java.sql.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import net.jqwik.api.*;
 import net.jqwik.api.lifecycle.*;
@@ -67,6 +71,32 @@ class TecocPersistenceTests {
 			assertThat(persistence.deleteUser(userId)).isTrue();
 			assertThat(persistence.readUser(userId)).isNotPresent();
 		}
+
+		@Example
+		void readUsers() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int otherUserId = persistence.createUser(new User("Kent", "kent@beck.com"));
+
+			Map<Integer, User> users = persistence.readUsers(Arrays.asList(userId, otherUserId, userId, -1));
+			assertThat(users).containsOnlyKeys(userId, otherUserId);
+			assertThat(users.get(otherUserId).getEmail()).isEqualTo("kent@beck.com");
+			assertThat(persistence.readUsers(Collections.emptyList())).isEmpty();
+
+			// read-only applies to the reading transaction only
+			assertThat(persistence.createUser(new User("Martin", "martin@fowler.com"))).isNotZero();
+		}
+
+		@Example
+		void readUsersSplitsLargeIdSetsIntoSeveralQueries() {
+			List<Integer> userIds = new ArrayList<>();
+			for (int i = 0; i < TecocPersistence.MAX_IN_LIST_SIZE * 2 + 1; i++) {
+				userIds.add(persistence.createUser(new User("User" + i, "user" + i + "@somemail.com")));
+			}
+
+			Map<Integer, User> users = persistence.readUsers(userIds);
+			assertThat(users).hasSize(userIds.size());
+			assertThat(users.keySet()).containsExactlyInAnyOrderElementsOf(userIds);
+		}
 	}
 
 	@Group
@@ -109,5 +139,664 @@ class TecocPersistenceTests {
 			assertThat(persistence.readPost(postId)).isNotPresent();
 		}
 
+		@Example
+		void createPostsInOneTransaction() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+
+			List<Integer> newIds = persistence.createPosts(Arrays.asList(
+					new Post(userId, "A Title", "this is a body"),
+					new Post(userId, "Another Title", "another body")
+			));
+			assertThat(newIds).hasSize(2).doesNotContain(0);
+
+			assertThat(persistence.countPosts()).isEqualTo(2);
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(2);
+			assertThat(persistence.readPost(newIds.get(1)).map(Post::getTitle)).hasValue("Another Title");
+		}
+
+		@Example
+		void bodiesAboveInlineLimitAreLoadedOnDemand() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			String longBody = String.join("", Collections.nCopies(100, "0123456789"));
+			int shortPostId = persistence.createPost(new Post(userId, "Short", "a short body"));
+			int longPostId = persistence.createPost(new Post(userId, "Long", longBody));
+
+			persistence.setInlineBodyLimit(100);
+
+			Post shortPost = persistence.readPost(shortPostId).get();
+			assertThat(shortPost.isBodyLoaded()).isTrue();
+			assertThat(shortPost.getBody()).isEqualTo("a short body");
+
+			Post longPost = persistence.readPost(longPostId).get();
+			assertThat(longPost.getTitle()).isEqualTo("Long");
+			assertThat(longPost.isBodyLoaded()).isFalse();
+			assertThat(longPost.getBodyLength()).isEqualTo(1000);
+			assertThat(longPost.getBody()).isEqualTo(longBody);
+			assertThat(longPost.isBodyLoaded()).isTrue();
+		}
+
+		@Example
+		void postWithoutBodyIsRejected() {
+			assertThatThrownBy(() -> new Post(1, "A Title", null))
+					.isInstanceOf(IllegalArgumentException.class)
+					.hasMessageContaining("body");
+		}
+
+		@Example
+		void streamPostBody() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int postId = persistence.createPost(new Post(userId, "A Title", "this is a body"));
+
+			Optional<Integer> firstChar = persistence.streamPostBody(postId, body -> body.read());
+			assertThat(firstChar).hasValue((int) 't');
+			assertThat(persistence.readPostBody(postId)).hasValue("this is a body");
+			assertThat(persistence.streamPostBody(postId + 1, body -> body.read())).isNotPresent();
+		}
+
+		@Example
+		void countPostsByUser() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int otherUserId = persistence.createUser(new User("Kent", "kent@beck.com"));
+			assertThat(persistence.countPostsByUser(userId)).isZero();
+
+			persistence.createPost(new Post(userId, "A Title", "this is a body"));
+			int postId = persistence.createPost(new Post(userId, "Another Title", "another body"));
+			persistence.createPost(new Post(otherUserId, "A Title", "this is a body"));
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(2);
+			assertThat(persistence.countPostsByUser(otherUserId)).isEqualTo(1);
+
+			persistence.deletePost(postId);
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(1);
+		}
+
+		@Example
+		void countPostsByUsers() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int otherUserId = persistence.createUser(new User("Kent", "kent@beck.com"));
+			persistence.createPost(new Post(userId, "A Title", "this is a body"));
+
+			Map<Integer, Integer> postCounts = persistence.countPostsByUsers(Arrays.asList(userId, otherUserId, -1));
+			assertThat(postCounts).containsEntry(userId, 1);
+			assertThat(postCounts).containsEntry(otherUserId, 0);
+			assertThat(postCounts).containsEntry(-1, 0);
+		}
+
+		@Example
+		void readPosts() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			String longBody = String.join("", Collections.nCopies(100, "0123456789"));
+			int shortPostId = persistence.createPost(new Post(userId, "Short", "a short body"));
+			int longPostId = persistence.createPost(new Post(userId, "Long", longBody));
+			persistence.setInlineBodyLimit(100);
+
+			Map<Integer, Post> posts = persistence.readPosts(Arrays.asList(shortPostId, longPostId, -1));
+			assertThat(posts).containsOnlyKeys(shortPostId, longPostId);
+			assertThat(posts.get(shortPostId).getBody()).isEqualTo("a short body");
+			assertThat(posts.get(longPostId).isBodyLoaded()).isFalse();
+			assertThat(posts.get(longPostId).getBody()).isEqualTo(longBody);
+			assertThat(posts.get(longPostId).getUserId()).isEqualTo(userId);
+		}
+
+	}
+
+	@Group
+	class Migration {
+
+		@Example
+		void initializeAddsAndFillsColumnsMissingInOlderTables() throws SQLException {
+			Connection connection = DriverManager.getConnection("jdbc:hsqldb:mem:tecoc-old;sql.syntax_pgs=true", username, password);
+			try (Statement statement = connection.createStatement()) {
+				statement.execute(
+						"CREATE TABLE users(id SERIAL PRIMARY KEY, name TEXT NOT NULL, email TEXT NOT NULL, " +
+								"created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP)"
+				);
+				statement.execute(
+						"CREATE TABLE posts(id SERIAL PRIMARY KEY, user_id INTEGER NOT NULL REFERENCES users(id), " +
+								"title TEXT NOT NULL, body TEXT NOT NULL, created_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP)"
+				);
+				statement.execute("INSERT INTO users(name, email) VALUES('Johannes', 'jl@johanneslink.net')");
+				statement.execute("INSERT INTO posts(user_id, title, body) SELECT id, 'A Title', 'this is a body' FROM users");
+			}
+			int userId = singleId(connection, "users");
+			int postId = singleId(connection, "posts");
+			TecocPersistence old = new TecocPersistence(connection);
+			try {
+				old.initialize();
+
+				assertThat(old.countPostsByUser(userId)).isEqualTo(1);
+				assertThat(old.readPost(postId).map(Post::getBodyLength)).hasValue("this is a body".length());
+				old.setSoftDelete(true);
+				assertThat(old.deleteUser(userId)).isTrue();
+				assertThat(old.countPosts()).isZero();
+			} finally {
+				connection.createStatement().execute("SHUTDOWN");
+			}
+		}
+
+		private int singleId(Connection connection, String table) throws SQLException {
+			ResultSet resultSet = connection.createStatement().executeQuery("SELECT id FROM " + table);
+			resultSet.next();
+			return resultSet.getInt("id");
+		}
+	}
+
+	@Group
+	class SoftDelete {
+
+		@Example
+		void deletedUserAndPostsAreInvisibleBeforePurge() {
+			persistence.setSoftDelete(true);
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int postId = persistence.createPost(new Post(userId, "A Title", "this is a body"));
+
+			assertThat(persistence.deleteUser(userId)).isTrue();
+			assertThat(persistence.deleteUser(userId)).isFalse();
+
+			assertThat(persistence.readUser(userId)).isNotPresent();
+			assertThat(persistence.readPost(postId)).isNotPresent();
+			assertThat(persistence.countUsers()).isZero();
+			assertThat(persistence.countPosts()).isZero();
+			assertThat(persistence.countPostsByUser(userId)).isZero();
+			assertThat(persistence.countTombstones()).isEqualTo(2);
+			assertThatThrownBy(() -> persistence.createPost(new Post(userId, "Too Late", "body")))
+					.isInstanceOf(RuntimeException.class);
+		}
+
+		@Example
+		void purgeRemovesTombstonesInBatches() {
+			persistence.setSoftDelete(true);
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			for (int i = 0; i < 5; i++) {
+				persistence.createPost(new Post(userId, "Title " + i, "body " + i));
+			}
+			persistence.deleteUser(userId);
+
+			assertThat(persistence.purgeDeleted(2)).isEqualTo(2);
+			assertThat(persistence.purgeDeleted(2)).isEqualTo(2);
+			assertThat(persistence.purgeDeleted(2)).isEqualTo(2);
+			assertThat(persistence.purgeDeleted(2)).isZero();
+			assertThat(persistence.countTombstones()).isZero();
+		}
+
+		@Example
+		void purgerRemovesTombstonesInTheBackground() throws InterruptedException {
+			persistence.setSoftDelete(true);
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			for (int i = 0; i < 20; i++) {
+				persistence.createPost(new Post(userId, "Title " + i, "body " + i));
+			}
+			persistence.deleteUser(userId);
+
+			try (TombstonePurger purger = new TombstonePurger(persistence, 3, Duration.ofMillis(1))) {
+				long deadline = System.currentTimeMillis() + 5_000;
+				while (persistence.countTombstones() > 0 && System.currentTimeMillis() < deadline) {
+					Thread.sleep(5);
+				}
+				assertThat(persistence.countTombstones()).isZero();
+				assertThat(purger.purged()).isEqualTo(21);
+				assertThat(purger.lastFailure()).isNull();
+			}
+		}
+
+		@Example
+		void idlePurgerBacksOff() throws Exception {
+			AtomicInteger purgeCalls = new AtomicInteger();
+			TecocPersistence counting = new TecocPersistence(DriverManager.getConnection(url, username, password)) {
+				@Override
+				public int purgeDeleted(int batchSize) {
+					purgeCalls.incrementAndGet();
+					return super.purgeDeleted(batchSize);
+				}
+			};
+			try (TombstonePurger purger = new TombstonePurger(counting, 3, Duration.ofMillis(1), Duration.ofMillis(100))) {
+				Thread.sleep(500);
+				assertThat(purger.purged()).isZero();
+			} finally {
+				counting.close();
+			}
+
+			// without backing off the purger would have called purgeDeleted hundreds of times
+			assertThat(purgeCalls.get()).isBetween(2, 20);
+		}
+	}
+
+	@Group
+	class ReadConnection {
+
+		@Example
+		void readsSeeCommittedWrites() throws SQLException {
+			TecocPersistence split = splitPersistence();
+			try {
+				int userId = split.createUser(new User("Johannes", "jl@johanneslink.net"));
+				int postId = split.createPost(new Post(userId, "A Title", "this is a body"));
+
+				assertThat(split.readUser(userId)).isPresent();
+				assertThat(split.readPost(postId)).isPresent();
+				assertThat(split.countUsers()).isEqualTo(1);
+				assertThat(split.countPosts()).isEqualTo(1);
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void readsDoNotQueueBehindWrites() throws Exception {
+			FaultInjection slowWrites = new FaultInjection(42).withStatementLatency(random -> Duration.ofSeconds(1).toNanos());
+			TecocPersistence split = new TecocPersistence(
+					slowWrites.wrap(DriverManager.getConnection(url, username, password)),
+					DriverManager.getConnection(url, username, password)
+			);
+			try {
+				// The write holds the primary connection while its statement waits for the injected latency
+				CompletableFuture<Integer> write = CompletableFuture.supplyAsync(
+						() -> split.createUser(new User("Kent", "kent@beck.com"))
+				);
+				Thread.sleep(100);
+
+				assertThat(CompletableFuture.supplyAsync(split::countUsers).get(500, TimeUnit.MILLISECONDS)).isZero();
+				assertThat(write).isNotDone();
+
+				assertThat(write.get(10, TimeUnit.SECONDS)).isNotZero();
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void multiGetsAndAggregatesUseReadConnection() throws SQLException {
+			SqlRecorder primaryRecorder = new SqlRecorder();
+			SqlRecorder readRecorder = new SqlRecorder();
+			TecocPersistence split = new TecocPersistence(
+					primaryRecorder.record(DriverManager.getConnection(url, username, password)),
+					readRecorder.record(DriverManager.getConnection(url, username, password))
+			);
+			try {
+				int userId = split.createUser(new User("Johannes", "jl@johanneslink.net"));
+				int postId = split.createPost(new Post(userId, "A Title", "this is a body"));
+				Set<String> writeStatements = new HashSet<>(primaryRecorder.statements());
+
+				assertThat(split.readUsers(Collections.singleton(userId))).containsOnlyKeys(userId);
+				assertThat(split.readPosts(Collections.singleton(postId))).containsOnlyKeys(postId);
+				assertThat(split.countPostsByUser(userId)).isEqualTo(1);
+				assertThat(split.countPostsByUsers(Collections.singleton(userId))).containsEntry(userId, 1);
+				assertThat(split.stateDigest().postCount()).isEqualTo(1);
+				assertThat(split.readPostBody(postId)).hasValue("this is a body");
+				assertThat(split.readChangeEvents(0, 10)).hasSize(2);
+
+				assertThat(primaryRecorder.statements()).isEqualTo(writeStatements);
+				assertThat(readRecorder.statements())
+						.anyMatch(sql -> sql.startsWith("SELECT * FROM users WHERE id IN"))
+						.anyMatch(sql -> sql.contains("FROM posts WHERE id IN"))
+						.anyMatch(sql -> sql.startsWith("SELECT post_count FROM users WHERE id=?"))
+						.anyMatch(sql -> sql.contains("tecoc_user_hash"))
+						.anyMatch(sql -> sql.startsWith("SELECT body FROM posts"))
+						.anyMatch(sql -> sql.contains("FROM change_events"));
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void readYourWritesReadsFromPrimary() throws SQLException {
+			Connection readConnection = DriverManager.getConnection(url, username, password);
+			SqlRecorder recorder = new SqlRecorder();
+			TecocPersistence split = new TecocPersistence(
+					DriverManager.getConnection(url, username, password), recorder.record(readConnection)
+			);
+			try {
+				split.countUsers();
+				assertThat(recorder.statements()).hasSize(1);
+
+				split.setReadYourWrites(true);
+				split.countUsers();
+				split.readUser(1);
+				assertThat(recorder.statements()).hasSize(1);
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void uncommittedAndRolledBackWritesAreInvisible() throws SQLException {
+			String mvccUrl = "jdbc:hsqldb:mem:tecoc-mvcc;hsqldb.tx=mvcc;sql.syntax_pgs=true";
+			TecocPersistence split = new TecocPersistence(
+					DriverManager.getConnection(mvccUrl, username, password),
+					DriverManager.getConnection(mvccUrl, username, password)
+			);
+			try (Connection writer = DriverManager.getConnection(mvccUrl, username, password)) {
+				split.initialize();
+				writer.setAutoCommit(false);
+				int userId;
+				try (PreparedStatement insert = writer.prepareStatement(
+						"INSERT INTO users(name, email) VALUES('Johannes', 'jl@johanneslink.net')",
+						Statement.RETURN_GENERATED_KEYS
+				)) {
+					insert.executeUpdate();
+					ResultSet generatedKeys = insert.getGeneratedKeys();
+					generatedKeys.next();
+					userId = generatedKeys.getInt(1);
+				}
+
+				assertThat(split.countUsers()).isZero();
+				assertThat(split.readUser(userId)).isNotPresent();
+
+				writer.rollback();
+				assertThat(split.countUsers()).isZero();
+				assertThat(split.readUser(userId)).isNotPresent();
+			} finally {
+				split.reset();
+				split.close();
+			}
+		}
+
+		private TecocPersistence splitPersistence() throws SQLException {
+			return new TecocPersistence(
+					DriverManager.getConnection(url, username, password),
+					DriverManager.getConnection(url, username, password)
+			);
+		}
+	}
+
+	@Group
+	class Timeouts {
+
+		@Example
+		void callsWithinTimeoutSucceed() {
+			persistence.setDefaultTimeout(Duration.ofSeconds(5));
+			int userId = persistence.withTimeout(
+					Duration.ofSeconds(5), () -> persistence.createUser(new User("Johannes", "jl@johanneslink.net"))
+			);
+
+			assertThat(persistence.readUser(userId)).isPresent();
+		}
+
+		@Example
+		void slowStatementIsCancelledAtDeadline() throws SQLException {
+			FaultInjection faults = new FaultInjection(42).withStatementLatency(random -> Duration.ofSeconds(10).toNanos());
+			TecocPersistence slow = new TecocPersistence(faults.wrap(DriverManager.getConnection(url, username, password)));
+			try {
+				assertThatThrownBy(() -> slow.withTimeout(Duration.ofMillis(200), slow::countUsers))
+						.isInstanceOfSatisfying(PersistenceTimeoutException.class, timeout -> {
+							assertThat(timeout.getTimeout()).isBetween(Duration.ofMillis(100), Duration.ofMillis(200));
+							assertThat(timeout.getElapsed()).isBetween(timeout.getTimeout(), Duration.ofSeconds(2));
+						});
+			} finally {
+				slow.close();
+			}
+		}
+
+		@Example
+		void expiredCallIsRolledBack() {
+			persistence.setDefaultTimeout(Duration.ofNanos(1));
+
+			assertThatThrownBy(() -> persistence.createUser(new User("Johannes", "jl@johanneslink.net")))
+					.isInstanceOf(PersistenceTimeoutException.class)
+					.hasMessageContaining("timed out");
+
+			persistence.setDefaultTimeout(null);
+			assertThat(persistence.countUsers()).isZero();
+		}
+
+		@Example
+		void executedStatementsAreRolledBackWhenDeadlineExpiresBeforeCommit() throws SQLException {
+			// The user's INSERT runs right away, recording its change event waits until the deadline cancels it
+			AtomicInteger statements = new AtomicInteger();
+			FaultInjection faults = new FaultInjection(42).withStatementLatency(
+					random -> statements.getAndIncrement() == 0 ? 0 : Duration.ofSeconds(10).toNanos()
+			);
+			TecocPersistence slow = new TecocPersistence(faults.wrap(DriverManager.getConnection(url, username, password)));
+			try {
+				assertThatThrownBy(() -> slow.withTimeout(
+						Duration.ofMillis(200), () -> slow.createUser(new User("Johannes", "jl@johanneslink.net"))
+				)).isInstanceOf(PersistenceTimeoutException.class);
+
+				assertThat(statements.get()).isEqualTo(2);
+				assertThat(persistence.countUsers()).isZero();
+				assertThat(persistence.readChangeEvents(0, 10)).isEmpty();
+			} finally {
+				slow.close();
+			}
+		}
+
+		@Example
+		void readOnReadConnectionThatOverrunsDeadlineTimesOut() throws SQLException {
+			TecocPersistence split = new TecocPersistence(
+					DriverManager.getConnection(url, username, password),
+					slowClosingStatements(DriverManager.getConnection(url, username, password), Duration.ofMillis(300))
+			);
+			try {
+				assertThatThrownBy(() -> split.withTimeout(Duration.ofMillis(100), split::countUsers))
+						.isInstanceOf(PersistenceTimeoutException.class);
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void slowSchemaStatementIsCancelledAtDeadline() throws SQLException {
+			FaultInjection faults = new FaultInjection(42).withStatementLatency(random -> Duration.ofSeconds(10).toNanos());
+			TecocPersistence slow = new TecocPersistence(faults.wrap(DriverManager.getConnection(url, username, password)));
+			try {
+				long start = System.nanoTime();
+				assertThatThrownBy(() -> slow.withTimeout(Duration.ofMillis(200), () -> {
+					slow.initialize();
+					return null;
+				})).isInstanceOf(PersistenceTimeoutException.class);
+				assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+			} finally {
+				slow.close();
+			}
+		}
+
+		// Statements execute right away, but closing them takes the read past its deadline
+		private Connection slowClosingStatements(Connection connection, Duration closeLatency) {
+			return (Connection) Proxy.newProxyInstance(
+					getClass().getClassLoader(),
+					new Class<?>[]{Connection.class},
+					(proxy, method, args) -> {
+						Object result = invoke(connection, method, args);
+						if (!(result instanceof Statement)) {
+							return result;
+						}
+						return Proxy.newProxyInstance(
+								getClass().getClassLoader(),
+								new Class<?>[]{method.getReturnType()},
+								(statementProxy, statementMethod, statementArgs) -> {
+									if (statementMethod.getName().equals("close")) {
+										Thread.sleep(closeLatency.toMillis());
+									}
+									return invoke(result, statementMethod, statementArgs);
+								}
+						);
+					}
+			);
+		}
+
+		private Object invoke(Object target, Method method, Object[] args) throws Throwable {
+			try {
+				return method.invoke(target, args);
+			} catch (InvocationTargetException invocationTargetException) {
+				throw invocationTargetException.getCause();
+			}
+		}
+	}
+
+	@Group
+	class WarmUp {
+
+		@Example
+		void warmUpLeavesNoTrace() {
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			StateDigest digest = persistence.stateDigest();
+			List<ChangeEvent> events = new ArrayList<>();
+			persistence.addChangeListener(events::add);
+
+			persistence.warmUp(50);
+
+			assertThat(events).isEmpty();
+			assertThat(persistence.countUsers()).isEqualTo(1);
+			assertThat(persistence.countPosts()).isZero();
+			assertThat(persistence.readChangeEvents(0, 10)).hasSize(1);
+			assertThat(persistence.stateDigest()).isEqualTo(digest);
+			assertThat(persistence.readUser(userId)).isPresent();
+		}
+
+		@Example
+		void warmUpUsesReadConnectionAndSoftDelete() throws SQLException {
+			TecocPersistence split = new TecocPersistence(
+					DriverManager.getConnection(url, username, password),
+					DriverManager.getConnection(url, username, password)
+			);
+			try {
+				split.setSoftDelete(true);
+				split.warmUp(50);
+
+				int userId = split.createUser(new User("Johannes", "jl@johanneslink.net"));
+				assertThat(split.readUser(userId)).isPresent();
+				assertThat(split.countTombstones()).isZero();
+			} finally {
+				split.close();
+			}
+		}
+
+		@Example
+		void reportHasLatenciesOfAllOperations() {
+			WarmUpReport report = persistence.warmUp(100);
+
+			assertThat(report.rounds()).isEqualTo(100);
+			assertThat(report.operations()).contains("createUser", "readPost", "stateDigest", "deleteUser");
+			for (String operation : report.operations()) {
+				assertThat(report.steadyState(operation)).isGreaterThan(Duration.ZERO);
+				assertThat(report.roundsToSteadyState(operation, 2.0)).isBetween(1, 100);
+			}
+			assertThat(report.total()).isGreaterThanOrEqualTo(report.firstCall("createUser"));
+		}
+	}
+
+	@Group
+	class StateDigests {
+
+		@Example
+		void digestEqualsDigestOfModelWithSameRows() {
+			PersistenceModel model = new PersistenceModel();
+			assertThat(persistence.stateDigest()).isEqualTo(model.stateDigest());
+
+			User user = new User("Johannes", "jl@johanneslink.net");
+			model.addUser(persistence.createUser(user), user);
+			Post post = new Post(user.getId(), "A Title", "this is a body");
+			model.addPost(persistence.createPost(post), post);
+			assertThat(persistence.stateDigest()).isEqualTo(model.stateDigest());
+		}
+
+		@Example
+		void digestDetectsChangedRows() {
+			PersistenceModel model = new PersistenceModel();
+			User user = new User("Johannes", "jl@johanneslink.net");
+			model.addUser(persistence.createUser(user), user);
+			Post post = new Post(user.getId(), "A Title", "this is a body");
+			model.addPost(persistence.createPost(post), post);
+
+			persistence.deletePost(post.getId());
+			persistence.createPost(new Post(user.getId(), "A Title", "this is a body"));
+
+			StateDigest digest = persistence.stateDigest();
+			assertThat(digest.postCount()).isEqualTo(1);
+			assertThat(digest.postsDiffer(model.stateDigest())).isTrue();
+			assertThat(digest.usersDiffer(model.stateDigest())).isFalse();
+		}
+	}
+
+	@Group
+	class ChangeEvents {
+
+		@Example
+		void listenersAreNotifiedAboutCommittedChanges() {
+			List<ChangeEvent> events = new ArrayList<>();
+			persistence.addChangeListener(events::add);
+
+			int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+			int postId = persistence.createPost(new Post(userId, "A Title", "this is a body"));
+			persistence.deletePost(postId);
+			persistence.deleteUser(userId);
+			persistence.deleteUser(userId);
+
+			assertThat(events).extracting(ChangeEvent::getEntity, ChangeEvent::getKind, ChangeEvent::getEntityId)
+							  .containsExactly(
+									  tuple(ChangeEvent.Entity.USER, ChangeEvent.Kind.CREATED, userId),
+									  tuple(ChangeEvent.Entity.POST, ChangeEvent.Kind.CREATED, postId),
+									  tuple(ChangeEvent.Entity.POST, ChangeEvent.Kind.DELETED, postId),
+									  tuple(ChangeEvent.Entity.USER, ChangeEvent.Kind.DELETED, userId)
+							  );
+		}
+
+		@Example
+		void failingListenerDoesNotFailCommittedWriteNorOtherListeners() {
+			List<ChangeEvent> events = new ArrayList<>();
+			persistence.addChangeListener(event -> {
+				throw new IllegalStateException("listener failure");
+			});
+			persistence.addChangeListener(events::add);
+			Thread.UncaughtExceptionHandler handler = Thread.currentThread().getUncaughtExceptionHandler();
+			List<Throwable> listenerFailures = new ArrayList<>();
+			Thread.currentThread().setUncaughtExceptionHandler((thread, failure) -> listenerFailures.add(failure));
+			try {
+				int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+
+				assertThat(persistence.readUser(userId)).isPresent();
+				assertThat(events).hasSize(1);
+				assertThat(listenerFailures).hasSize(1);
+			} finally {
+				Thread.currentThread().setUncaughtExceptionHandler(handler);
+			}
+		}
+
+		@Example
+		void slowListenerDoesNotHoldUpOtherWrites() throws Exception {
+			CountDownLatch publishing = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			persistence.addChangeListener(event -> {
+				if (Thread.currentThread().getName().equals("slow-listener")) {
+					publishing.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException interruptedException) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			Thread slowWriter = new Thread(() -> persistence.createUser(new User("Kent", "kent@beck.com")), "slow-listener");
+			slowWriter.start();
+			try {
+				assertThat(publishing.await(5, TimeUnit.SECONDS)).isTrue();
+
+				CompletableFuture<Integer> write = CompletableFuture.supplyAsync(
+						() -> persistence.createUser(new User("Johannes", "jl@johanneslink.net"))
+				);
+				assertThat(write.get(5, TimeUnit.SECONDS)).isNotZero();
+			} finally {
+				release.countDown();
+				slowWriter.join();
+			}
+		}
+
+		@Example
+		void pollerDeliversOutboxInBatchesAndResumesFromOffset() {
+			for (int i = 0; i < 5; i++) {
+				persistence.createUser(new User("User" + i, "user" + i + "@somemail.com"));
+			}
+
+			ChangeEventPoller poller = new ChangeEventPoller(persistence, 0, 2);
+			assertThat(poller.poll()).hasSize(2);
+			assertThat(poller.poll()).hasSize(2);
+			long offset = poller.offset();
+
+			ChangeEventPoller resumedPoller = new ChangeEventPoller(persistence, offset, 2);
+			List<ChangeEvent> events = new ArrayList<>();
+			assertThat(resumedPoller.pollInto(events::add)).isEqualTo(1);
+			assertThat(events).extracting(ChangeEvent::getEntity, ChangeEvent::getKind)
+							  .containsExactly(tuple(ChangeEvent.Entity.USER, ChangeEvent.Kind.CREATED));
+			assertThat(resumedPoller.poll()).isEmpty();
+			assertThat(resumedPoller.offset()).isGreaterThan(offset);
+		}
 	}
 }
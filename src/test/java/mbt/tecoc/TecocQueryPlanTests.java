@@ -0,0 +1,171 @@
+package mbt.tecoc;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.regex.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.lifecycle.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+/**
+ * Runs {@code EXPLAIN PLAN FOR} on every statement {@link TecocPersistence} issues
+ * and reduces each plan to the access path per table.
+ * The access paths are compared to a baseline file, a missing baseline fails the test.
+ * After an intended plan change record it anew with {@code gradle test -PrecordQueryPlans} and review the diff.
+ */
+class TecocQueryPlanTests {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String url = "jdbc:hsqldb:mem:tecoc-query-plans;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+	final static Path baseline = Paths.get("src/test/resources/mbt/tecoc/query-plans.txt");
+	final static String RECORD_PROPERTY = "mbt.recordQueryPlans";
+
+	private static final Pattern TABLE = Pattern.compile("^\\s*table=(\\w+)");
+	private static final Pattern ACCESS = Pattern.compile("^\\s*access=(.+)$");
+	private static final Pattern INDEX = Pattern.compile("index=(\\w+)");
+
+	private static Map<String, List<String>> accessPaths;
+
+	@BeforeContainer
+	static void explainAllStatements() throws Exception {
+		Class.forName(driverClassName);
+		try (Connection connection = DriverManager.getConnection(url, username, password)) {
+			SqlRecorder recorder = new SqlRecorder();
+			TecocPersistence persistence = new TecocPersistence(recorder.record(connection));
+			persistence.initialize();
+			runAllOperations(persistence);
+
+			accessPaths = new TreeMap<>();
+			for (String sql : recorder.statements()) {
+				if (isQueryOrUpdate(sql)) {
+					accessPaths.put(sql, accessPaths(explain(connection, sql)));
+				}
+			}
+			connection.createStatement().execute("SHUTDOWN");
+		}
+	}
+
+	private static void runAllOperations(TecocPersistence persistence) {
+		persistence.setInlineBodyLimit(10);
+		int userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+		int otherUserId = persistence.createUser(new User("Kent", "kent@beck.com"));
+		int userWithoutPosts = persistence.createUser(new User("Martin", "martin@fowler.com"));
+		persistence.readUser(userId);
+		persistence.readUsers(Arrays.asList(userId, otherUserId));
+		persistence.countUsers();
+		int postId = persistence.createPost(new Post(userId, "A Title", "a body longer than the inline limit"));
+		persistence.createPosts(Arrays.asList(
+				new Post(userId, "Title 1", "body 1"),
+				new Post(otherUserId, "Title 2", "body 2")
+		));
+		persistence.countPosts();
+		persistence.readPost(postId).ifPresent(Post::getBody);
+		persistence.readPosts(Arrays.asList(postId, postId + 1)).values().forEach(Post::getBody);
+		persistence.countPostsByUser(userId);
+		persistence.countPostsByUsers(Arrays.asList(userId, otherUserId, 42));
+		persistence.readChangeEvents(0, 10);
+		persistence.stateDigest();
+		persistence.deletePost(postId);
+		persistence.deleteUser(userWithoutPosts);
+		persistence.setSoftDelete(true);
+		persistence.deletePost(postId + 1);
+		persistence.deleteUser(otherUserId);
+		persistence.countTombstones();
+		persistence.purgeDeleted(10);
+		persistence.reset();
+	}
+
+	private static boolean isQueryOrUpdate(String sql) {
+		String command = sql.trim().split("\\s+")[0].toUpperCase();
+		return Arrays.asList("SELECT", "INSERT", "UPDATE", "DELETE").contains(command);
+	}
+
+	private static List<String> explain(Connection connection, String sql) throws SQLException {
+		List<String> plan = new ArrayList<>();
+		try (Statement statement = connection.createStatement()) {
+			ResultSet resultSet = statement.executeQuery("EXPLAIN PLAN FOR " + sql);
+			while (resultSet.next()) {
+				plan.addAll(Arrays.asList(resultSet.getString(1).split("\n")));
+			}
+		}
+		return plan;
+	}
+
+	// Generated index names carry object ids that change with every schema change, so the numbers are dropped
+	private static List<String> accessPaths(List<String> plan) {
+		Set<String> paths = new LinkedHashSet<>();
+		String table = null;
+		String access = null;
+		for (String line : plan) {
+			Matcher tableMatcher = TABLE.matcher(line);
+			Matcher accessMatcher = ACCESS.matcher(line);
+			Matcher indexMatcher = INDEX.matcher(line);
+			if (tableMatcher.find()) {
+				table = tableMatcher.group(1);
+				access = null;
+			} else if (accessMatcher.find()) {
+				access = accessMatcher.group(1).trim();
+			} else if (indexMatcher.find() && table != null && access != null) {
+				paths.add(String.format("%s: %s %s", table, access, indexMatcher.group(1).replaceAll("_\\d+", "")));
+				table = null;
+			}
+		}
+		return new ArrayList<>(paths);
+	}
+
+	@Example
+	void statementsWithConditionUseAnIndex() {
+		assertThat(accessPaths).isNotEmpty();
+		accessPaths.forEach((sql, paths) -> {
+			if (!sql.toUpperCase().contains(" WHERE ")) {
+				return;
+			}
+			paths.stream()
+				 .filter(path -> !path.startsWith("SYSTEM_"))
+				 .forEach(path -> assertThat(path).describedAs(sql).contains("INDEX PRED"));
+		});
+	}
+
+	@Example
+	void lookupsByIdUsePrimaryKey() {
+		accessPaths.forEach((sql, paths) -> {
+			if (sql.matches("(?s).*(FROM|UPDATE) (users|posts) .*WHERE id ?(=|IN).*")) {
+				assertThat(paths).describedAs(sql).anyMatch(path -> path.endsWith("SYS_IDX_SYS_PK"));
+			}
+		});
+	}
+
+	@Example
+	void accessPathsMatchBaseline() throws IOException {
+		String actual = format(accessPaths);
+		if (Boolean.getBoolean(RECORD_PROPERTY)) {
+			Files.createDirectories(baseline.getParent());
+			Files.write(baseline, actual.getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		assertThat(baseline)
+				.describedAs("Query plan baseline is missing. Record it with -PrecordQueryPlans, review and commit it.")
+				.exists();
+		String expected = new String(Files.readAllBytes(baseline), StandardCharsets.UTF_8);
+		assertThat(actual)
+				.describedAs("Query plans differ from %s. If the change is intended rerun with -PrecordQueryPlans.", baseline)
+				.isEqualTo(expected);
+	}
+
+	private static String format(Map<String, List<String>> accessPaths) {
+		StringBuilder formatted = new StringBuilder();
+		accessPaths.forEach((sql, paths) -> {
+			formatted.append(sql).append('\n');
+			paths.forEach(path -> formatted.append("  ").append(path).append('\n'));
+			formatted.append('\n');
+		});
+		return formatted.toString();
+	}
+}
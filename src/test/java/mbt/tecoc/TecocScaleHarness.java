@@ -0,0 +1,254 @@
+package mbt.tecoc;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.sql.*;
+import java.util.*;
+import java.util.function.*;
+
+/**
+ * Not part of the test run. Start {@link #main(String[])} to measure how operation latency grows with table size.
+ * <p>
+ * For every size a fresh database is bulk loaded with that many posts and a tenth as many users.
+ * Posts per user follow a Zipfian distribution, so a few users have most posts and many have none.
+ * The report has one CSV line per size and operation with latency percentiles in microseconds.
+ * Arguments: comma separated sizes (default 10000,100000,1000000), Zipf exponent (default 1.0)
+ * and report file (default build/reports/tecoc-scale.csv).
+ * Sizes of 10M and above need a heap of several GB with the in-memory database.
+ */
+public class TecocScaleHarness {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String urlTemplate = "jdbc:hsqldb:mem:tecoc-scale-%d;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+
+	private static final int BATCH_SIZE = 10_000;
+	private static final int WARMUP_CALLS = 1_000;
+	private static final int SAMPLES = 2_000;
+	private static final int COUNT_SAMPLES = 50;
+
+	private static class Latencies {
+		private final String operation;
+		private final long[] nanos;
+
+		private Latencies(String operation, long[] nanos) {
+			this.operation = operation;
+			this.nanos = nanos.clone();
+			Arrays.sort(this.nanos);
+		}
+
+		private long percentile(int percentile) {
+			if (nanos.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile / 100.0 * nanos.length) - 1;
+			return nanos[Math.max(0, index)];
+		}
+	}
+
+	private final Random random = new Random(42);
+	private final double zipfExponent;
+
+	TecocScaleHarness(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int[] sizes = Arrays.stream((args.length > 0 ? args[0] : "10000,100000,1000000").split(","))
+							.mapToInt(size -> Integer.parseInt(size.trim()))
+							.toArray();
+		double zipfExponent = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+		Path report = Paths.get(args.length > 2 ? args[2] : "build/reports/tecoc-scale.csv");
+
+		Class.forName(driverClassName);
+		TecocScaleHarness harness = new TecocScaleHarness(zipfExponent);
+		List<String> lines = new ArrayList<>();
+		lines.add("posts,users,operation,samples,p50_us,p90_us,p99_us,max_us");
+		for (int size : sizes) {
+			for (String line : harness.measure(size)) {
+				System.out.println(line);
+				lines.add(line);
+			}
+		}
+		if (report.getParent() != null) {
+			Files.createDirectories(report.getParent());
+		}
+		Files.write(report, lines, StandardCharsets.UTF_8);
+		System.out.println("Report written to " + report.toAbsolutePath());
+	}
+
+	private static int usersFor(int posts) {
+		return Math.max(1, posts / 10);
+	}
+
+	List<String> measure(int posts) throws SQLException {
+		try (Connection connection = DriverManager.getConnection(String.format(urlTemplate, posts), username, password)) {
+			TecocPersistence persistence = new TecocPersistence(connection);
+			persistence.initialize();
+			int[] postCounts = withDeletableUsers(zipfianPostCounts(usersFor(posts), posts));
+			int users = postCounts.length;
+			long loadStart = System.nanoTime();
+			bulkLoad(connection, postCounts);
+			System.out.printf("loaded %d users and %d posts in %d ms%n", users, posts, (System.nanoTime() - loadStart) / 1_000_000);
+
+			int[] usersWithoutPosts = usersWithoutPosts(postCounts);
+			List<Latencies> results = new ArrayList<>();
+			results.add(sample("readUser", SAMPLES, () -> persistence.readUser(1 + random.nextInt(users))));
+			results.add(sample("readPost", SAMPLES, () -> persistence.readPost(1 + random.nextInt(posts))));
+			results.add(sample("countPosts", COUNT_SAMPLES, persistence::countPosts));
+			results.add(sampleDeleteUser(persistence, usersWithoutPosts));
+			results.add(new Latencies("reset", new long[]{time(persistence::reset)}));
+
+			connection.createStatement().execute("SHUTDOWN");
+			List<String> lines = new ArrayList<>();
+			for (Latencies latencies : results) {
+				lines.add(String.format(
+						"%d,%d,%s,%d,%d,%d,%d,%d",
+						posts, users, latencies.operation, latencies.nanos.length,
+						latencies.percentile(50) / 1000, latencies.percentile(90) / 1000,
+						latencies.percentile(99) / 1000, latencies.percentile(100) / 1000
+				));
+			}
+			return lines;
+		}
+	}
+
+	/**
+	 * Post count per user id - 1. Counts fall off with the Zipf exponent over a random ranking of users,
+	 * the rounding remainder goes to the highest ranks.
+	 */
+	int[] zipfianPostCounts(int users, int posts) {
+		double[] weights = new double[users];
+		double totalWeight = 0;
+		for (int rank = 0; rank < users; rank++) {
+			weights[rank] = 1.0 / Math.pow(rank + 1, zipfExponent);
+			totalWeight += weights[rank];
+		}
+		int[] countsByRank = new int[users];
+		int assigned = 0;
+		for (int rank = 0; rank < users; rank++) {
+			countsByRank[rank] = (int) (posts * weights[rank] / totalWeight);
+			assigned += countsByRank[rank];
+		}
+		for (int rank = 0; assigned < posts; rank = (rank + 1) % users) {
+			countsByRank[rank]++;
+			assigned++;
+		}
+
+		List<Integer> ranks = new ArrayList<>(users);
+		for (int rank = 0; rank < users; rank++) {
+			ranks.add(rank);
+		}
+		Collections.shuffle(ranks, random);
+		int[] postCounts = new int[users];
+		for (int user = 0; user < users; user++) {
+			postCounts[user] = countsByRank[ranks.get(user)];
+		}
+		return postCounts;
+	}
+
+	// With small sizes the Zipf tail has no users without posts, so enough of them are added to sample deleteUser
+	private int[] withDeletableUsers(int[] postCounts) {
+		int withoutPosts = (int) Arrays.stream(postCounts).filter(count -> count == 0).count();
+		return Arrays.copyOf(postCounts, postCounts.length + Math.max(0, SAMPLES - withoutPosts));
+	}
+
+	// Bypasses TecocPersistence to insert in large batches with explicit ids 1..n
+	private void bulkLoad(Connection connection, int[] postCounts) throws SQLException {
+		try (
+				PreparedStatement insertUser = connection.prepareStatement(
+						"INSERT INTO users(id, name, email, post_count) VALUES(?, ?, ?, ?)"
+				);
+				PreparedStatement insertPost = connection.prepareStatement(
+						"INSERT INTO posts(id, user_id, title, body, body_length) VALUES(?, ?, ?, ?, ?)"
+				)
+		) {
+			for (int user = 0; user < postCounts.length; user++) {
+				int userId = user + 1;
+				insertUser.setInt(1, userId);
+				insertUser.setString(2, "User " + userId);
+				insertUser.setString(3, "user" + userId + "@scale.test");
+				insertUser.setInt(4, postCounts[user]);
+				insertUser.addBatch();
+				if (userId % BATCH_SIZE == 0) {
+					insertUser.executeBatch();
+				}
+			}
+			if (postCounts.length % BATCH_SIZE != 0) {
+				insertUser.executeBatch();
+			}
+			connection.commit();
+
+			int postId = 0;
+			for (int user = 0; user < postCounts.length; user++) {
+				for (int i = 0; i < postCounts[user]; i++) {
+					postId++;
+					String body = syntheticBody();
+					insertPost.setInt(1, postId);
+					insertPost.setInt(2, user + 1);
+					insertPost.setString(3, "Post " + postId);
+					insertPost.setString(4, body);
+					insertPost.setInt(5, body.length());
+					insertPost.addBatch();
+					if (postId % BATCH_SIZE == 0) {
+						insertPost.executeBatch();
+						connection.commit();
+					}
+				}
+			}
+			if (postId % BATCH_SIZE != 0) {
+				insertPost.executeBatch();
+			}
+			connection.commit();
+		}
+	}
+
+	private String syntheticBody() {
+		int words = 5 + random.nextInt(40);
+		StringBuilder body = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			body.append("lorem ipsum dolor sit amet".split(" ")[random.nextInt(5)]).append(' ');
+		}
+		return body.toString();
+	}
+
+	private int[] usersWithoutPosts(int[] postCounts) {
+		List<Integer> userIds = new ArrayList<>();
+		for (int user = 0; user < postCounts.length; user++) {
+			if (postCounts[user] == 0) {
+				userIds.add(user + 1);
+			}
+		}
+		Collections.shuffle(userIds, random);
+		return userIds.stream().mapToInt(Integer::intValue).toArray();
+	}
+
+	// Users with posts cannot be deleted, so only users without posts are sampled
+	private Latencies sampleDeleteUser(TecocPersistence persistence, int[] usersWithoutPosts) {
+		long[] nanos = new long[SAMPLES];
+		for (int i = 0; i < SAMPLES; i++) {
+			int userId = usersWithoutPosts[i];
+			nanos[i] = time(() -> persistence.deleteUser(userId));
+		}
+		return new Latencies("deleteUser", nanos);
+	}
+
+	private Latencies sample(String operation, int samples, Supplier<?> call) {
+		for (int i = 0; i < Math.min(WARMUP_CALLS, samples); i++) {
+			call.get();
+		}
+		long[] nanos = new long[samples];
+		for (int i = 0; i < samples; i++) {
+			nanos[i] = time(call::get);
+		}
+		return new Latencies(operation, nanos);
+	}
+
+	private static long time(Runnable call) {
+		long start = System.nanoTime();
+		call.run();
+		return System.nanoTime() - start;
+	}
+}
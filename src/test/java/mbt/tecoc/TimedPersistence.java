@@ -0,0 +1,103 @@
+package mbt.tecoc;
+
+import java.util.*;
+
+import mbt.stateful.*;
+
+class TimedPersistence implements Persistence {
+
+	private final Persistence persistence;
+	private final ActionTimings timings;
+
+	TimedPersistence(Persistence persistence, ActionTimings timings) {
+		this.persistence = persistence;
+		this.timings = timings;
+	}
+
+	@Override
+	public void reset() {
+		timings.sut(() -> {
+			persistence.reset();
+			return null;
+		});
+	}
+
+	@Override
+	public int countUsers() {
+		return timings.sut(persistence::countUsers);
+	}
+
+	@Override
+	public int createUser(User newUser) {
+		return timings.sut(() -> persistence.createUser(newUser));
+	}
+
+	@Override
+	public Optional<User> readUser(int userId) {
+		return timings.sut(() -> persistence.readUser(userId));
+	}
+
+	@Override
+	public Map<Integer, User> readUsers(Collection<Integer> userIds) {
+		return timings.sut(() -> persistence.readUsers(userIds));
+	}
+
+	@Override
+	public boolean deleteUser(int userId) {
+		return timings.sut(() -> persistence.deleteUser(userId));
+	}
+
+	@Override
+	public int countPosts() {
+		return timings.sut(persistence::countPosts);
+	}
+
+	@Override
+	public int createPost(Post newPost) {
+		return timings.sut(() -> persistence.createPost(newPost));
+	}
+
+	@Override
+	public List<Integer> createPosts(List<Post> newPosts) {
+		return timings.sut(() -> persistence.createPosts(newPosts));
+	}
+
+	@Override
+	public Optional<Post> readPost(int postId) {
+		// Bodies are loaded lazily, so the body has to be read while the clock is running
+		return timings.sut(() -> {
+			Optional<Post> post = persistence.readPost(postId);
+			post.ifPresent(Post::getBody);
+			return post;
+		});
+	}
+
+	@Override
+	public Map<Integer, Post> readPosts(Collection<Integer> postIds) {
+		return timings.sut(() -> {
+			Map<Integer, Post> posts = persistence.readPosts(postIds);
+			posts.values().forEach(Post::getBody);
+			return posts;
+		});
+	}
+
+	@Override
+	public boolean deletePost(int postId) {
+		return timings.sut(() -> persistence.deletePost(postId));
+	}
+
+	@Override
+	public int countPostsByUser(int userId) {
+		return timings.sut(() -> persistence.countPostsByUser(userId));
+	}
+
+	@Override
+	public Map<Integer, Integer> countPostsByUsers(Collection<Integer> userIds) {
+		return timings.sut(() -> persistence.countPostsByUsers(userIds));
+	}
+
+	@Override
+	public StateDigest stateDigest() {
+		return timings.sut(persistence::stateDigest);
+	}
+}
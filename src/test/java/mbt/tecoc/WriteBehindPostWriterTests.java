@@ -0,0 +1,128 @@
+package mbt.tecoc;
+
+import java.sql.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import net.jqwik.api.*;
+import net.jqwik.api.lifecycle.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class WriteBehindPostWriterTests {
+
+	final static String driverClassName = "org.hsqldb.jdbc.JDBCDriver";
+	final static String url = "jdbc:hsqldb:mem:tecoc;sql.syntax_pgs=true";
+	final static String username = "sa";
+	final static String password = "";
+
+	private TecocPersistence persistence;
+	private int userId;
+
+	@BeforeContainer
+	static void initInMemoryDatabaseDriver() throws Exception {
+		Class.forName(driverClassName);
+	}
+
+	@BeforeProperty
+	void initPersistence() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, username, password);
+		persistence = new TecocPersistence(connection);
+		persistence.initialize();
+		userId = persistence.createUser(new User("Johannes", "jl@johanneslink.net"));
+	}
+
+	@AfterProperty
+	void closePersistence() throws SQLException {
+		persistence.reset();
+		persistence.close();
+	}
+
+	@Example
+	void flushWritesAllEnqueuedPosts() throws Exception {
+		try (WriteBehindPostWriter writer = new WriteBehindPostWriter(persistence, 100, 10, Duration.ofMinutes(1))) {
+			List<CompletableFuture<Integer>> ids = new ArrayList<>();
+			for (int i = 0; i < 25; i++) {
+				ids.add(writer.createPost(new Post(userId, "Title " + i, "body " + i)));
+			}
+			writer.flush();
+
+			assertThat(persistence.countPosts()).isEqualTo(25);
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(25);
+			for (int i = 0; i < 25; i++) {
+				assertThat(ids.get(i)).isDone();
+				Optional<Post> post = persistence.readPost(ids.get(i).get());
+				assertThat(post).isPresent();
+				assertThat(post.get().getTitle()).isEqualTo("Title " + i);
+			}
+		}
+	}
+
+	@Example
+	void batchIsWrittenWhenMaxDelayHasPassed() throws Exception {
+		try (WriteBehindPostWriter writer = new WriteBehindPostWriter(persistence, 100, 10, Duration.ofMillis(10))) {
+			CompletableFuture<Integer> id = writer.createPost(new Post(userId, "A Title", "this is a body"));
+			assertThat(id.get(5, TimeUnit.SECONDS)).isNotZero();
+		}
+	}
+
+	@Example
+	void closeWritesPendingPostsAndRejectsNewOnes() {
+		WriteBehindPostWriter writer = new WriteBehindPostWriter(persistence, 100, 10, Duration.ofMinutes(1));
+		CompletableFuture<Integer> id = writer.createPost(new Post(userId, "A Title", "this is a body"));
+		writer.close();
+
+		assertThat(id).isCompleted();
+		assertThat(persistence.countPosts()).isEqualTo(1);
+		assertThatThrownBy(() -> writer.createPost(new Post(userId, "A Title", "this is a body")))
+				.isInstanceOf(IllegalStateException.class);
+	}
+
+	@Example
+	void badPostFailsAloneWhenItsBatchCannotBeWritten() throws Exception {
+		try (WriteBehindPostWriter writer = new WriteBehindPostWriter(persistence, 100, 10, Duration.ofMinutes(1))) {
+			CompletableFuture<Integer> valid = writer.createPost(new Post(userId, "A Title", "this is a body"));
+			CompletableFuture<Integer> invalid = writer.createPost(new Post(userId + 1000, "A Title", "this is a body"));
+			CompletableFuture<Integer> otherValid = writer.createPost(new Post(userId, "Another Title", "another body"));
+			writer.flush();
+
+			assertThat(invalid).isCompletedExceptionally();
+			assertThat(persistence.readPost(valid.get())).isPresent();
+			assertThat(persistence.readPost(otherValid.get())).isPresent();
+			assertThat(persistence.countPostsByUser(userId)).isEqualTo(2);
+		}
+	}
+
+	@Example
+	void postsRacingCloseAreEitherWrittenOrRejected() throws Exception {
+		WriteBehindPostWriter writer = new WriteBehindPostWriter(persistence, 4, 2, Duration.ofMillis(1));
+		ExecutorService producers = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<CompletableFuture<Integer>>>> produced = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				produced.add(producers.submit(() -> {
+					List<CompletableFuture<Integer>> ids = new ArrayList<>();
+					try {
+						while (true) {
+							ids.add(writer.createPost(new Post(userId, "A Title", "this is a body")));
+							writer.flush();
+						}
+					} catch (IllegalStateException closed) {
+						return ids;
+					}
+				}));
+			}
+			Thread.sleep(50);
+			writer.close();
+
+			for (Future<List<CompletableFuture<Integer>>> ids : produced) {
+				for (CompletableFuture<Integer> id : ids.get(5, TimeUnit.SECONDS)) {
+					assertThat(id).isDone();
+				}
+			}
+		} finally {
+			producers.shutdownNow();
+		}
+	}
+}